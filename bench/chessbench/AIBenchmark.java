@@ -0,0 +1,68 @@
+package chessbench;
+
+import chessgame.AI;
+import chessgame.BitBoard;
+import chessgame.ChessBoard;
+import chessgame.ChessMove;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times a whole fixed depth search with AI.findBestMove. A new AI is made for
+ * every search, so each one starts with an empty transposition table and
+ * measures the same amount of work. Allocating the table is part of the time
+ * measured. This is the cold start case; GameController keeps its AI for the
+ * whole game, so its searches after the first one start warm.
+ *
+ * @author John Polus
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AIBenchmark
+{
+
+    @Param(
+    {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"
+    })
+    public String fen;
+
+    @Param(
+    {
+        "4"
+    })
+    public int depth;
+
+    private AI ai;
+
+    @Setup(Level.Invocation)
+    public void setUp()
+    {
+        BitBoard position = BitBoard.fromFen(fen);
+        ai = new AI(new ChessBoard(position), position.getSideToMove());
+        ai.setAlgorithm(AI.Algorithm.ALPHA_BETA);
+        ai.setSearchDepth(depth);
+    }
+
+    @Benchmark
+    public ChessMove findBestMove()
+    {
+        return ai.findBestMove();
+    }
+}
@@ -0,0 +1,111 @@
+package chessbench;
+
+import chessgame.BitBoard;
+import chessgame.BoardRater;
+import chessgame.ChessBoard;
+import chessgame.ChessMove;
+import chessgame.ChessPiece;
+import chessgame.GameController;
+import chessgame.MoveGenerator;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times the board operations the search spends most of its time in, on the
+ * start position and on a busy middlegame position. Run with "ant bench".
+ *
+ * @author John Polus
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark
+{
+
+    @Param(
+    {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"
+    })
+    public String fen;
+
+    private ChessBoard board;
+    private ChessPiece.Color toMove;
+    private BoardRater rater;
+    private int[] moves;
+    private File positionFile;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        BitBoard position = BitBoard.fromFen(fen);
+        board = new ChessBoard(position);
+        toMove = position.getSideToMove();
+        rater = new BoardRater();
+        moves = new int[MoveGenerator.MAX_MOVES];
+        positionFile = File.createTempFile("chessbench", ".txt");
+        positionFile.deleteOnExit();
+        GameController.savePositionToFile(board, positionFile.getAbsolutePath());
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        positionFile.delete();
+    }
+
+    @Benchmark
+    public ChessBoard copyBoard()
+    {
+        return new ChessBoard(board);
+    }
+
+    @Benchmark
+    public ArrayList<ChessMove> findAllMoves()
+    {
+        return board.findAllMoves(toMove);
+    }
+
+    @Benchmark
+    public int generateMoves()
+    {
+        return board.generateMoves(toMove, moves);
+    }
+
+    @Benchmark
+    public boolean checkForCheck()
+    {
+        return board.checkForCheck(toMove);
+    }
+
+    @Benchmark
+    public int evaluate()
+    {
+        return rater.evaluate(board, toMove);
+    }
+
+    @Benchmark
+    public ChessBoard loadPositionFromFile()
+    {
+        ChessBoard loaded = new ChessBoard();
+        GameController.loadPositionFromFile(positionFile.getAbsolutePath(), loaded);
+        return loaded;
+    }
+}
@@ -9,6 +9,11 @@ import java.util.Collections;
  * find better and worse moves to play. Generates future board positions, rates
  * them, and finds the one most advantageous to the current player.
  *
+ * An AI can be kept for a whole game: give it each new position with
+ * updatePosition and its transposition table and move ordering history
+ * carry over from one search to the next. Call newGame when they no longer
+ * apply.
+ *
  * @author John Polus
  */
 public class AI
@@ -16,13 +21,15 @@ public class AI
 
     public static final float FLOAT_ERROR = 0.0001f;
     public static final int MAX_BRANCH = 5;
+    public static final int DEFAULT_SEARCH_DEPTH = 4;
 
-    private static final boolean DEBUG = true;
+    // set this system property to true to turn debug mode on for every AI
+    public static final String DEBUG_PROPERTY = "chessgame.debug";
 
     // Enumerates the algorithms that can be used to evaluate the position
     public enum Algorithm
     {
-        DFS, BFS, GREEDY, MINI_MAX, SIMPLE
+        DFS, BFS, GREEDY, MINI_MAX, SIMPLE, ALPHA_BETA, PARALLEL, PROOF_NUMBER
     };
 
     /**
@@ -91,6 +98,19 @@ public class AI
     public Algorithm algorithm;
     protected ArrayList<ChessMove> pathToMate;
     protected BoardRater rater;
+    // created when first needed, AIs are often made just to ask isGameOver
+    private TranspositionTable transTable;
+    private int hashSizeMB = TranspositionTable.DEFAULT_SIZE_MB;
+    private int searchDepth = DEFAULT_SEARCH_DEPTH;
+    // threads used by the PARALLEL algorithm, created when first needed
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private ParallelSearch parallelSearch;
+    // engine of the ALPHA_BETA algorithm, kept so its history carries over
+    private SearchEngine searchEngine;
+    private SearchResult lastResult;
+    private SearchListener listener;
+    // when on, the game tree searches write their first level to a file
+    private boolean debug = Boolean.getBoolean(DEBUG_PROPERTY);
 
     /**
      * Default constructor, initializes the chessboard to the start of a new
@@ -118,6 +138,53 @@ public class AI
         algorithm = Algorithm.SIMPLE;
     }
 
+    /**
+     * Sets the position to search next, e.g. after a move has been played.
+     * What was learned in earlier searches is kept, positions in the
+     * transposition table may well come up again.
+     *
+     * @param cb board to search, copied
+     * @param playerToMove color of player who has the next move
+     */
+    public void updatePosition(ChessBoard cb, ChessPiece.Color playerToMove)
+    {
+        gameBoard = new ChessBoard(cb);
+        this.playerToMove = playerToMove;
+    }
+
+    /**
+     * Goes back to the start of a new game and forgets everything learned in
+     * earlier searches, see clearTables.
+     */
+    public void newGame()
+    {
+        gameBoard = new ChessBoard();
+        playerToMove = ChessPiece.Color.WHITE;
+        lastResult = null;
+        clearTables();
+    }
+
+    /**
+     * Forgets everything learned in earlier searches: the transposition table
+     * is emptied and the move ordering history cleared. The tables themselves
+     * are kept for reuse.
+     */
+    public void clearTables()
+    {
+        if (transTable != null)
+        {
+            transTable.clear();
+        }
+        if (searchEngine != null)
+        {
+            searchEngine.getMoveOrderer().clear();
+        }
+        if (parallelSearch != null)
+        {
+            parallelSearch.clearHistory();
+        }
+    }
+
     private void dumpGameTree(Tree<GameState> gameTree, String filename)
     {
         try
@@ -150,10 +217,18 @@ public class AI
      */
     public ChessMove findBestMove()
     {
+        if (algorithm == Algorithm.ALPHA_BETA || algorithm == Algorithm.PARALLEL)
+        {
+            return findBestMove(SearchLimits.depth(searchDepth));
+        }
+
         int depth = 5;
         long startTime = System.currentTimeMillis();
         Tree<GameState> gameTree = generateGameTree(depth, true);
-        System.out.println("Time elapsed: " + (System.currentTimeMillis() - startTime) + "ms");
+        if (debug)
+        {
+            System.out.println("Time elapsed: " + (System.currentTimeMillis() - startTime) + "ms");
+        }
         if (gameTree.children.isEmpty())
         {
             return null;
@@ -170,6 +245,94 @@ public class AI
         }
     }
 
+    /**
+     * Runs a depth-first alpha-beta search, one ply deeper at a time, until
+     * the given limits are reached, without building a game tree. The move
+     * from the deepest finished search is returned. The full result, including
+     * the expected line of play and number of positions searched, is kept for
+     * getLastSearchResult, and the SearchListener, if there is one, is told
+     * about each depth as it finishes. With the PARALLEL algorithm the search
+     * runs on several threads, see setThreads.
+     *
+     * @param limits depth, time and node budget of the search
+     * @return ChessMove - best move found, null if there are no legal moves
+     */
+    public ChessMove findBestMove(SearchLimits limits)
+    {
+        if (algorithm == Algorithm.PARALLEL)
+        {
+            if (parallelSearch == null)
+            {
+                parallelSearch = new ParallelSearch(rater, getTranspositionTable(), threads);
+                parallelSearch.setSearchListener(listener);
+            }
+            lastResult = parallelSearch.search(gameBoard, playerToMove, limits);
+        }
+        else
+        {
+            if (searchEngine == null)
+            {
+                searchEngine = new SearchEngine(rater, getTranspositionTable());
+                searchEngine.setSearchListener(listener);
+            }
+            lastResult = searchEngine.search(gameBoard, playerToMove, limits);
+        }
+        return lastResult.bestMove;
+    }
+
+    /**
+     * Returns the result of the last alpha-beta search
+     *
+     * @return SearchResult - result of the last search, null if there hasn't
+     * been one
+     */
+    public SearchResult getLastSearchResult()
+    {
+        return lastResult;
+    }
+
+    /**
+     * Sets who to tell about the progress of the alpha-beta searches, e.g. to
+     * show the expected line or log the search speed. See SearchStats for
+     * what is reported.
+     *
+     * @param listener listener to tell, null for nobody
+     */
+    public void setSearchListener(SearchListener listener)
+    {
+        this.listener = listener;
+        if (parallelSearch != null)
+        {
+            parallelSearch.setSearchListener(listener);
+        }
+        if (searchEngine != null)
+        {
+            searchEngine.setSearchListener(listener);
+        }
+    }
+
+    /**
+     * Turns debug mode on or off. In debug mode the game tree searches print
+     * how long they took and write the first level of the tree to
+     * gameTree.txt. Off unless the DEBUG_PROPERTY system property is true.
+     *
+     * @param debug true to turn debug mode on
+     */
+    public void setDebug(boolean debug)
+    {
+        this.debug = debug;
+    }
+
+    /**
+     * Sets how many plies deep the alpha-beta search looks
+     *
+     * @param depth number of plies to search
+     */
+    public void setSearchDepth(int depth)
+    {
+        searchDepth = depth;
+    }
+
     /**
      * Takes the given parent and generates all legal children for that tree,
      * including giving each of them their ratings
@@ -244,7 +407,7 @@ public class AI
             curDepth++;
         }
 
-        if (DEBUG)
+        if (debug)
         {
             dumpGameTree(gameTree, "gameTree.txt");
         }
@@ -390,6 +553,71 @@ public class AI
         return bestMove;
     }
 
+    /**
+     * Sets how much memory the transposition table may use. Any positions
+     * already stored are thrown away.
+     *
+     * @param sizeMB size of the table in megabytes
+     */
+    public void setHashSize(int sizeMB)
+    {
+        hashSizeMB = sizeMB;
+        releaseTables();
+    }
+
+    /**
+     * Lets go of the transposition table and the search engines, so their
+     * memory can be freed while the AI isn't needed. The next search makes
+     * them again, empty.
+     */
+    public void releaseTables()
+    {
+        transTable = null;
+        searchEngine = null;
+        shutdownParallelSearch();
+    }
+
+    /**
+     * Sets how many threads the PARALLEL algorithm searches with. Defaults to
+     * the number of processors.
+     *
+     * @param threads number of threads, at least 1
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = Math.max(1, threads);
+        shutdownParallelSearch();
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    private void shutdownParallelSearch()
+    {
+        if (parallelSearch != null)
+        {
+            parallelSearch.shutdown();
+            parallelSearch = null;
+        }
+    }
+
+    /**
+     * Returns the transposition table used by this AI's searches, creating it
+     * on first use
+     *
+     * @return TranspositionTable - table of already searched positions
+     */
+    protected TranspositionTable getTranspositionTable()
+    {
+        if (transTable == null)
+        {
+            transTable = new TranspositionTable(hashSizeMB);
+        }
+        return transTable;
+    }
+
     /**
      * Set the algorithm used by this AI.
      *
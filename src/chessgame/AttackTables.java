@@ -0,0 +1,190 @@
+package chessgame;
+
+/**
+ * This class holds the squares attacked by knights, kings and pawns from every
+ * square of the board. The tables are built once when the class is loaded, so
+ * move generation can look them up instead of adding move vectors and checking
+ * bounds. Rooks, bishops and queens use rays in each direction, cut off at the
+ * first piece in the way. Squares are numbered as in BitBoard.
+ *
+ * @author John Polus
+ */
+public final class AttackTables
+{
+
+    // masks of the squares attacked from each square
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+    // indexed by [BitBoard color][square], captures only
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // Ray directions. Squares along the first four get larger, along the last
+    // four they get smaller, which decides how the nearest blocker is found.
+    private static final int EAST = 0;
+    private static final int SOUTH = 1;
+    private static final int SOUTH_EAST = 2;
+    private static final int SOUTH_WEST = 3;
+    private static final int WEST = 4;
+    private static final int NORTH = 5;
+    private static final int NORTH_WEST = 6;
+    private static final int NORTH_EAST = 7;
+    private static final int[] DIR_X =
+    {
+        1, 0, 1, -1, -1, 0, -1, 1
+    };
+    private static final int[] DIR_Y =
+    {
+        0, 1, 1, 1, 0, -1, -1, -1
+    };
+
+    // indexed by [direction][square], all squares to the edge of the board
+    private static final long[][] RAYS = new long[8][64];
+
+    // indexed by [from][to], squares strictly between two squares on the same
+    // line, 0 if they aren't on a line
+    public static final long[][] BETWEEN = new long[64][64];
+
+    // indexed by [from][to], the whole line through two squares from edge to
+    // edge of the board, 0 if they aren't on a line
+    public static final long[][] LINE = new long[64][64];
+
+    // x and y differences of the moves of each piece, see Knight and King
+    private static final int[] KNIGHT_X =
+    {
+        2, 1, -2, 1, 2, -1, -2, -1
+    };
+    private static final int[] KNIGHT_Y =
+    {
+        1, 2, 1, -2, -1, 2, -1, -2
+    };
+    private static final int[] KING_X =
+    {
+        0, 1, 1, 1, 0, -1, -1, -1
+    };
+    private static final int[] KING_Y =
+    {
+        1, 1, 0, -1, -1, -1, 0, 1
+    };
+
+    static
+    {
+        for (int square = 0; square < 64; square++)
+        {
+            int x = BitBoard.xOf(square);
+            int y = BitBoard.yOf(square);
+            KNIGHT_ATTACKS[square] = stepMask(x, y, KNIGHT_X, KNIGHT_Y);
+            KING_ATTACKS[square] = stepMask(x, y, KING_X, KING_Y);
+            // White pawns capture in -y direction, Black pawns in +y direction
+            PAWN_ATTACKS[BitBoard.WHITE][square] = squareMask(x - 1, y - 1) | squareMask(x + 1, y - 1);
+            PAWN_ATTACKS[BitBoard.BLACK][square] = squareMask(x - 1, y + 1) | squareMask(x + 1, y + 1);
+
+            for (int dir = 0; dir < 8; dir++)
+            {
+                long ray = 0L;
+                for (int i = 1; i < 8; i++)
+                {
+                    long bit = squareMask(x + i * DIR_X[dir], y + i * DIR_Y[dir]);
+                    if (bit == 0)
+                    {
+                        break;
+                    }
+                    BETWEEN[square][Long.numberOfTrailingZeros(bit)] = ray;
+                    ray |= bit;
+                }
+                RAYS[dir][square] = ray;
+            }
+
+            // opposite directions are four apart
+            for (int dir = 0; dir < 8; dir++)
+            {
+                long line = RAYS[dir][square] | RAYS[(dir + 4) & 7][square] | (1L << square);
+                for (long ray = RAYS[dir][square]; ray != 0; ray &= ray - 1)
+                {
+                    LINE[square][Long.numberOfTrailingZeros(ray)] = line;
+                }
+            }
+        }
+    }
+
+    private AttackTables()
+    {
+    }
+
+    /**
+     * Returns the squares a rook on the given square attacks, up to and
+     * including the first occupied square in each direction
+     *
+     * @param square square the rook is on
+     * @param occupied mask of all pieces on the board
+     * @return long - mask of attacked squares
+     */
+    public static long rookAttacks(int square, long occupied)
+    {
+        return rayAttacks(EAST, square, occupied) | rayAttacks(SOUTH, square, occupied)
+                | rayAttacks(WEST, square, occupied) | rayAttacks(NORTH, square, occupied);
+    }
+
+    /**
+     * Returns the squares a bishop on the given square attacks, up to and
+     * including the first occupied square in each direction
+     *
+     * @param square square the bishop is on
+     * @param occupied mask of all pieces on the board
+     * @return long - mask of attacked squares
+     */
+    public static long bishopAttacks(int square, long occupied)
+    {
+        return rayAttacks(SOUTH_EAST, square, occupied) | rayAttacks(SOUTH_WEST, square, occupied)
+                | rayAttacks(NORTH_WEST, square, occupied) | rayAttacks(NORTH_EAST, square, occupied);
+    }
+
+    public static long queenAttacks(int square, long occupied)
+    {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    /**
+     * Returns the part of the ray in the given direction that isn't hidden
+     * behind the nearest blocker
+     */
+    private static long rayAttacks(int dir, int square, long occupied)
+    {
+        long ray = RAYS[dir][square];
+        long blockers = ray & occupied;
+        if (blockers == 0)
+        {
+            return ray;
+        }
+        int nearest = dir < WEST
+                ? Long.numberOfTrailingZeros(blockers)
+                : 63 - Long.numberOfLeadingZeros(blockers);
+        return ray ^ RAYS[dir][nearest];
+    }
+
+    /**
+     * Returns the mask of all squares reached by one of the given steps from
+     * (x, y) that are still on the board
+     */
+    private static long stepMask(int x, int y, int[] xSteps, int[] ySteps)
+    {
+        long mask = 0L;
+        for (int i = 0; i < xSteps.length; i++)
+        {
+            mask |= squareMask(x + xSteps[i], y + ySteps[i]);
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the mask with just the bit for (x, y) set, or 0 if (x, y) is off
+     * the board
+     */
+    static long squareMask(int x, int y)
+    {
+        if (x < 0 || 7 < x || y < 0 || 7 < y)
+        {
+            return 0L;
+        }
+        return 1L << BitBoard.square(x, y);
+    }
+}
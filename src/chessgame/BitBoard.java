@@ -0,0 +1,491 @@
+package chessgame;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This class represents a board position as a set of 64-bit masks, one for
+ * each type of piece of each color, along with the side to move, the castling
+ * rights and the en passant square. Bit n of a mask is set when that type of
+ * piece is on square n, where squares are numbered y * 8 + x, so a8 is square
+ * 0 and h1 is square 63, matching the coordinates used by ChessBoard. The
+ * Zobrist key of the pieces, the material of each color and its total from
+ * the PieceSquareTables are updated as each piece is placed or removed, so
+ * none of them need to be counted up from scratch.
+ *
+ * @author John Polus
+ */
+public class BitBoard implements Serializable
+{
+
+    // Piece types, second part of the index into the piece masks
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+    public static final int NUM_TYPES = 6;
+
+    // Colors, first part of the index into the piece masks
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    // Castling rights, combined as bit flags
+    public static final int CASTLE_WK = 1;
+    public static final int CASTLE_WQ = 2;
+    public static final int CASTLE_BK = 4;
+    public static final int CASTLE_BQ = 8;
+
+    public static final int NO_SQUARE = -1;
+
+    // Value of each piece type, same as ChessPiece.value
+    public static final int[] VALUES =
+    {
+        1, 3, 3, 5, 9, 10
+    };
+
+    // indexed by color * NUM_TYPES + type
+    private final long[] pieceMasks;
+    private final long[] colorMasks;
+    private long occupied;
+    // Zobrist key of the pieces alone, see getKey for the whole position
+    private long pieceKey;
+    // indexed by color, kept up to date by setPiece and clearPiece
+    private final int[] materialSums;
+    private final int[] positionalSums;
+
+    private ChessPiece.Color sideToMove;
+    private int castlingRights;
+    private int enPassantSquare;
+
+    /**
+     * Default constructor, creates an empty board with White to move
+     */
+    public BitBoard()
+    {
+        pieceMasks = new long[2 * NUM_TYPES];
+        colorMasks = new long[2];
+        occupied = 0L;
+        pieceKey = 0L;
+        materialSums = new int[2];
+        positionalSums = new int[2];
+        sideToMove = ChessPiece.Color.WHITE;
+        castlingRights = 0;
+        enPassantSquare = NO_SQUARE;
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param template position to copy from
+     */
+    public BitBoard(BitBoard template)
+    {
+        pieceMasks = template.pieceMasks.clone();
+        colorMasks = template.colorMasks.clone();
+        occupied = template.occupied;
+        pieceKey = template.pieceKey;
+        materialSums = template.materialSums.clone();
+        positionalSums = template.positionalSums.clone();
+        sideToMove = template.sideToMove;
+        castlingRights = template.castlingRights;
+        enPassantSquare = template.enPassantSquare;
+    }
+
+    /**
+     * Returns the square number of the given board coordinates
+     *
+     * @param x column, columns start at 0
+     * @param y row, rows start at 0
+     * @return int - square number from 0 to 63
+     */
+    public static int square(int x, int y)
+    {
+        return (y << 3) | x;
+    }
+
+    public static int xOf(int square)
+    {
+        return square & 7;
+    }
+
+    public static int yOf(int square)
+    {
+        return square >>> 3;
+    }
+
+    public static int colorIndex(ChessPiece.Color color)
+    {
+        return color == ChessPiece.Color.WHITE ? WHITE : BLACK;
+    }
+
+    public static ChessPiece.Color colorOf(int colorIndex)
+    {
+        return colorIndex == WHITE ? ChessPiece.Color.WHITE : ChessPiece.Color.BLACK;
+    }
+
+    /**
+     * Returns the piece type constant for the given piece
+     *
+     * @param cp piece whose type should be found
+     * @return int - one of PAWN through KING
+     */
+    public static int typeOf(ChessPiece cp)
+    {
+        if (cp instanceof Pawn)
+        {
+            return PAWN;
+        }
+        else if (cp instanceof Knight)
+        {
+            return KNIGHT;
+        }
+        else if (cp instanceof Bishop)
+        {
+            return BISHOP;
+        }
+        else if (cp instanceof Rook)
+        {
+            return ROOK;
+        }
+        else if (cp instanceof Queen)
+        {
+            return QUEEN;
+        }
+        return KING;
+    }
+
+    /**
+     * Creates a new ChessPiece of the given color and type at (x, y)
+     *
+     * @param color color of the new piece
+     * @param type one of PAWN through KING
+     * @param x column of the new piece
+     * @param y row of the new piece
+     * @return ChessPiece - newly created piece
+     */
+    public static ChessPiece createPiece(ChessPiece.Color color, int type, int x, int y)
+    {
+        switch (type)
+        {
+            case PAWN:
+                return new Pawn(color, x, y);
+            case KNIGHT:
+                return new Knight(color, x, y);
+            case BISHOP:
+                return new Bishop(color, x, y);
+            case ROOK:
+                return new Rook(color, x, y);
+            case QUEEN:
+                return new Queen(color, x, y);
+            default:
+                return new King(color, x, y);
+        }
+    }
+
+    /**
+     * Places a piece of the given color and type on the given square. The
+     * square is assumed to be empty.
+     *
+     * @param square square to place the piece on
+     * @param color WHITE or BLACK
+     * @param type one of PAWN through KING
+     */
+    public void setPiece(int square, int color, int type)
+    {
+        long bit = 1L << square;
+        pieceMasks[color * NUM_TYPES + type] |= bit;
+        colorMasks[color] |= bit;
+        occupied |= bit;
+        pieceKey ^= Zobrist.pieceKey(color, type, square);
+        materialSums[color] += VALUES[type];
+        positionalSums[color] += PieceSquareTables.value(color, type, square);
+    }
+
+    /**
+     * Removes the piece of the given color and type from the given square
+     *
+     * @param square square to remove the piece from
+     * @param color WHITE or BLACK
+     * @param type one of PAWN through KING
+     */
+    public void clearPiece(int square, int color, int type)
+    {
+        long bit = ~(1L << square);
+        pieceMasks[color * NUM_TYPES + type] &= bit;
+        colorMasks[color] &= bit;
+        occupied &= bit;
+        pieceKey ^= Zobrist.pieceKey(color, type, square);
+        materialSums[color] -= VALUES[type];
+        positionalSums[color] -= PieceSquareTables.value(color, type, square);
+    }
+
+    /**
+     * Returns the type of the piece on the given square
+     *
+     * @param square square to look at
+     * @return int - one of PAWN through KING, or -1 if the square is empty
+     */
+    public int typeAt(int square)
+    {
+        long bit = 1L << square;
+        if ((occupied & bit) == 0)
+        {
+            return -1;
+        }
+        for (int type = 0; type < NUM_TYPES; type++)
+        {
+            if (((pieceMasks[type] | pieceMasks[NUM_TYPES + type]) & bit) != 0)
+            {
+                return type;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the color of the piece on the given square
+     *
+     * @param square square to look at
+     * @return int - WHITE or BLACK, or -1 if the square is empty
+     */
+    public int colorAt(int square)
+    {
+        long bit = 1L << square;
+        if ((colorMasks[WHITE] & bit) != 0)
+        {
+            return WHITE;
+        }
+        return (colorMasks[BLACK] & bit) != 0 ? BLACK : -1;
+    }
+
+    public boolean isEmpty(int square)
+    {
+        return (occupied & (1L << square)) == 0;
+    }
+
+    public long getPieceMask(int color, int type)
+    {
+        return pieceMasks[color * NUM_TYPES + type];
+    }
+
+    public long getColorMask(int color)
+    {
+        return colorMasks[color];
+    }
+
+    public long getColorMask(ChessPiece.Color color)
+    {
+        return colorMasks[colorIndex(color)];
+    }
+
+    public long getOccupied()
+    {
+        return occupied;
+    }
+
+    /**
+     * Returns how many pieces of the given color and type are on the board
+     *
+     * @param color WHITE or BLACK
+     * @param type one of PAWN through KING
+     * @return int - number of pieces
+     */
+    public int count(int color, int type)
+    {
+        return Long.bitCount(pieceMasks[color * NUM_TYPES + type]);
+    }
+
+    /**
+     * Returns the total value of the pieces of the given color, using the same
+     * values as ChessPiece
+     *
+     * @param color player whose pieces should be counted
+     * @return int - sum of the values of that player's pieces
+     */
+    public int material(ChessPiece.Color color)
+    {
+        return materialSums[colorIndex(color)];
+    }
+
+    /**
+     * Returns the sum of the PieceSquareTables bonuses of the pieces of the
+     * given color
+     *
+     * @param color player whose pieces should be counted
+     * @return int - total bonus in hundredths of a pawn
+     */
+    public int positional(ChessPiece.Color color)
+    {
+        return positionalSums[colorIndex(color)];
+    }
+
+    /**
+     * Returns the square the king of the given color is on
+     *
+     * @param color WHITE or BLACK
+     * @return int - square of the king, or NO_SQUARE if there is no king
+     */
+    public int kingSquare(int color)
+    {
+        long kings = pieceMasks[color * NUM_TYPES + KING];
+        return kings == 0 ? NO_SQUARE : Long.numberOfTrailingZeros(kings);
+    }
+
+    /**
+     * Returns the Zobrist key of the pieces on the board, without the side to
+     * move, castling rights or en passant square
+     *
+     * @return long - hash key of the piece placement
+     */
+    public long getPieceKey()
+    {
+        return pieceKey;
+    }
+
+    /**
+     * Returns the Zobrist key of the whole position. Positions with the same
+     * pieces, side to move, castling rights and en passant square have the
+     * same key; different positions almost never do.
+     *
+     * @return long - hash key of this position
+     */
+    public long getKey()
+    {
+        return pieceKey ^ Zobrist.sideKey(sideToMove)
+                ^ Zobrist.castlingKey(castlingRights)
+                ^ Zobrist.enPassantKey(enPassantSquare);
+    }
+
+    public ChessPiece.Color getSideToMove()
+    {
+        return sideToMove;
+    }
+
+    public void setSideToMove(ChessPiece.Color color)
+    {
+        sideToMove = color;
+    }
+
+    public int getCastlingRights()
+    {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(int rights)
+    {
+        castlingRights = rights;
+    }
+
+    public int getEnPassantSquare()
+    {
+        return enPassantSquare;
+    }
+
+    public void setEnPassantSquare(int square)
+    {
+        enPassantSquare = square;
+    }
+
+    /**
+     * Creates a position from Forsyth-Edwards Notation, e.g. the start
+     * position is "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1".
+     * The move counters at the end may be left out, and are ignored.
+     *
+     * @param fen position in FEN
+     * @return BitBoard - the position described
+     * @throws IllegalArgumentException if fen can't be read
+     */
+    public static BitBoard fromFen(String fen)
+    {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4)
+        {
+            throw new IllegalArgumentException("Incomplete FEN: " + fen);
+        }
+        BitBoard position = new BitBoard();
+        int x = 0;
+        int y = 0;
+        for (char c : fields[0].toCharArray())
+        {
+            if (c == '/')
+            {
+                x = 0;
+                y++;
+            }
+            else if (c >= '1' && c <= '8')
+            {
+                x += c - '0';
+            }
+            else
+            {
+                int type = "pnbrqk".indexOf(Character.toLowerCase(c));
+                if (type < 0 || x > 7 || y > 7)
+                {
+                    throw new IllegalArgumentException("Bad piece placement: " + fields[0]);
+                }
+                position.setPiece(square(x, y), Character.isUpperCase(c) ? WHITE : BLACK, type);
+                x++;
+            }
+        }
+
+        if (!fields[1].equals("w") && !fields[1].equals("b"))
+        {
+            throw new IllegalArgumentException("Bad side to move: " + fields[1]);
+        }
+        position.setSideToMove(fields[1].equals("w") ? ChessPiece.Color.WHITE
+                : ChessPiece.Color.BLACK);
+
+        int rights = 0;
+        rights |= fields[2].indexOf('K') >= 0 ? CASTLE_WK : 0;
+        rights |= fields[2].indexOf('Q') >= 0 ? CASTLE_WQ : 0;
+        rights |= fields[2].indexOf('k') >= 0 ? CASTLE_BK : 0;
+        rights |= fields[2].indexOf('q') >= 0 ? CASTLE_BQ : 0;
+        position.setCastlingRights(rights);
+
+        if (!fields[3].equals("-"))
+        {
+            int file = fields[3].charAt(0) - 'a';
+            int rank = fields[3].length() == 2 ? fields[3].charAt(1) - '0' : 0;
+            if (file < 0 || file > 7 || rank < 1 || rank > 8)
+            {
+                throw new IllegalArgumentException("Bad en passant square: " + fields[3]);
+            }
+            position.setEnPassantSquare(square(file, 8 - rank));
+        }
+        return position;
+    }
+
+    /**
+     * Two BitBoards are equal if they have the same pieces on the same squares,
+     * the same side to move, castling rights and en passant square
+     *
+     * @param obj BitBoard to compare this to
+     * @return boolean - true if this equals obj, false otherwise
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof BitBoard))
+        {
+            return false;
+        }
+        BitBoard bb = (BitBoard) obj;
+        if (getKey() != bb.getKey())
+        {
+            return false;
+        }
+        return Arrays.equals(pieceMasks, bb.pieceMasks)
+                && sideToMove == bb.sideToMove
+                && castlingRights == bb.castlingRights
+                && enPassantSquare == bb.enPassantSquare;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        long key = getKey();
+        return (int) (key ^ (key >>> 32));
+    }
+}
@@ -1,9 +1,6 @@
 package chessgame;
 
 import chessgame.AI.GameState;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 
 /**
  *
@@ -14,6 +11,19 @@ public class BoardRater
 
     private static final int TOTAL_MATERIAL = 39;
 
+    // weights used by evaluate, in hundredths of a pawn
+    private static final int PAWN_SCORE = 100;
+    private static final int HANGING_WEIGHT = 50;
+    private static final int MOBILITY_WEIGHT = 5;
+
+    // hanging pieces and mobility are only looked at when the material and
+    // piece-square score is within this much of the search window
+    private static final int LAZY_MARGIN = 300;
+
+    // rows a pawn passes over on its first move, y = 5 for White, 2 for Black
+    private static final long WHITE_SKIP_ROW = 0xFFL << 40;
+    private static final long BLACK_SKIP_ROW = 0xFFL << 16;
+
     /**
      * This method takes a ChessBoard and assigns it a material, mobility, and
      * hanging rating.
@@ -36,50 +46,57 @@ public class BoardRater
     }
 
     /**
-     * Finds all chess pieces that can attack/defend the square at (xDest,
-     * yDest)
+     * Scores the given board for the given player, for use by SearchEngine.
+     * Looks at the same things as rateBoard (material, mobility and hanging
+     * pieces) plus where the pieces stand, see PieceSquareTables, but gives a
+     * whole number in hundredths of a pawn, positive when the player is ahead.
+     *
+     * @param cb board to score
+     * @param player player whose point of view the score is from
+     * @return int - score of the position
+     */
+    public int evaluate(ChessBoard cb, ChessPiece.Color player)
+    {
+        return evaluate(cb, player, -SearchEngine.INFINITY, SearchEngine.INFINITY);
+    }
+
+    /**
+     * Scores the given board like evaluate(cb, player), but skips the costly
+     * terms when the score is so far outside alpha to beta that they can't
+     * bring it back in. Material and piece-square totals are kept up to date
+     * by the board as moves are made, so in that case no pieces are looked at.
      *
-     * @param cb - board to check
-     * @param xDest - x position of target square
-     * @param yDest - y position of target square
-     * @return array of all chess pieces that can attack this square
+     * @param cb board to score
+     * @param player player whose point of view the score is from
+     * @param alpha score the player is already sure of
+     * @param beta score the opponent is already sure of
+     * @return int - score of the position, only roughly right if it is below
+     * alpha or above beta
      */
-    private ArrayList<ChessPiece> aimedHere(ChessBoard cb, int xDest, int yDest)
+    public int evaluate(ChessBoard cb, ChessPiece.Color player, int alpha, int beta)
     {
-        ArrayList<ChessPiece> defenders = new ArrayList<>();
-        for (ChessPiece cp : cb.getPieces())
+        BitBoard bits = cb.bitBoard();
+        int material = bits.material(ChessPiece.Color.WHITE)
+                - bits.material(ChessPiece.Color.BLACK);
+        int positional = bits.positional(ChessPiece.Color.WHITE)
+                - bits.positional(ChessPiece.Color.BLACK);
+        int score = PAWN_SCORE * material + positional;
+        if (player == ChessPiece.Color.BLACK)
         {
-            boolean isADefender = false;
+            score = -score;
+        }
+        if (score + LAZY_MARGIN <= alpha || score - LAZY_MARGIN >= beta)
+        {
+            return score;
+        }
 
-            // if regular non-empty piece, check if it can move here and the
-            // path is clear
-            if (!(cp instanceof Pawn))
-            {
-                isADefender = cp.canMove(xDest, yDest) && cb.pathIsClear(cp, xDest, yDest);
-            } // if a pawn, they capture differently than they move
-            else
-            {
-                // square must be one column to the left or right
-                if (cp.xCoord - 1 == xDest || cp.xCoord + 1 == xDest)
-                {
-                    // Black captures down, White captures up
-                    if (cp.color == ChessPiece.Color.BLACK && cp.yCoord + 1 == yDest)
-                    {
-                        isADefender = true;
-                    }
-                    else if (cp.color == ChessPiece.Color.WHITE && cp.yCoord - 1 == yDest)
-                    {
-                        isADefender = true;
-                    }
-                }
-            }
+        int hanging = hangValue(cb, ChessPiece.Color.BLACK)
+                - hangValue(cb, ChessPiece.Color.WHITE);
+        int mobility = howManyMoves(ChessPiece.Color.WHITE, cb)
+                - howManyMoves(ChessPiece.Color.BLACK, cb);
 
-            if (isADefender)
-            {
-                defenders.add(cp);
-            }
-        }
-        return defenders;
+        int slowTerms = HANGING_WEIGHT * hanging + MOBILITY_WEIGHT * mobility;
+        return player == ChessPiece.Color.WHITE ? score + slowTerms : score - slowTerms;
     }
 
     /**
@@ -93,20 +110,13 @@ public class BoardRater
     private float matRating(ChessBoard cb)
     {
         float wMaterial, bMaterial, totalMaterial;
-        wMaterial = bMaterial = 0.0f;
 
-        ArrayList<ChessPiece> pieces = cb.getPieces(ChessPiece.Color.WHITE);
-        for (ChessPiece piece : pieces)
-        {
-            wMaterial += piece.value;
-        }
+        // piece counts come straight from the bitboard, no copies needed
+        BitBoard bits = cb.bitBoard();
+        wMaterial = bits.material(ChessPiece.Color.WHITE);
         wMaterial -= hangValue(cb, ChessPiece.Color.WHITE);
 
-        pieces = cb.getPieces(ChessPiece.Color.BLACK);
-        for (ChessPiece piece : pieces)
-        {
-            bMaterial += piece.value;
-        }
+        bMaterial = bits.material(ChessPiece.Color.BLACK);
         bMaterial -= hangValue(cb, ChessPiece.Color.BLACK);
         totalMaterial = wMaterial + bMaterial;
 
@@ -141,50 +151,61 @@ public class BoardRater
      */
     private int howManyMoves(ChessPiece.Color color, ChessBoard cb)
     {
+        BitBoard bits = cb.bitBoard();
+        int c = BitBoard.colorIndex(color);
+        long ownPieces = bits.getColorMask(c);
+        long occupied = bits.getOccupied();
+
+        // everything but pawns can use the attack tables, no bounds checks
         int numMoves = 0;
-        ArrayList<ChessPiece> myPieces = cb.getPieces(color);
-        for (ChessPiece cp : myPieces)
+        for (long mask = bits.getPieceMask(c, BitBoard.KNIGHT); mask != 0; mask &= mask - 1)
+        {
+            int sq = Long.numberOfTrailingZeros(mask);
+            numMoves += Long.bitCount(AttackTables.KNIGHT_ATTACKS[sq] & ~ownPieces);
+        }
+        for (long mask = bits.getPieceMask(c, BitBoard.BISHOP); mask != 0; mask &= mask - 1)
+        {
+            int sq = Long.numberOfTrailingZeros(mask);
+            numMoves += Long.bitCount(AttackTables.bishopAttacks(sq, occupied) & ~ownPieces);
+        }
+        for (long mask = bits.getPieceMask(c, BitBoard.ROOK); mask != 0; mask &= mask - 1)
+        {
+            int sq = Long.numberOfTrailingZeros(mask);
+            numMoves += Long.bitCount(AttackTables.rookAttacks(sq, occupied) & ~ownPieces);
+        }
+        for (long mask = bits.getPieceMask(c, BitBoard.QUEEN); mask != 0; mask &= mask - 1)
         {
-            int xi = cp.getX();
-            int yi = cp.getY();
-            HashSet<Vector> moves = cp.getMoveSet();
-            for (Vector move : moves)
-            {
-                int xf = xi + move.getXDiff();
-                int yf = yi + move.getYDiff();
-                if (!cb.areIndicesInBounds(xf, yf))
-                {
-                    continue;
-                }
-                if (cb.pathIsClear(cp, xf, yf) && cb.spaceIsEmpty(xf, yf))
-                {
-                    numMoves++;
-                }
-                else if (cb.pathIsClear(cp, xf, yf) 
-                        && cb.spaceIsOpen(xf, yf, cp.getColor())
-                        && !(cp instanceof Pawn))
-                {
-                    numMoves++;
-                }
-                else if (cp instanceof Pawn)
-                {
-                    ChessPiece opposingPiece = cb.getCopyOfPieceAt(xf, yf);
-                    if (color == ChessPiece.Color.WHITE && yi - yf == 1
-                            && (xi - xf == 1 || xf - xi == 1)
-                            && opposingPiece != null
-                            && opposingPiece.getColor() == ChessPiece.Color.BLACK)
-                    {
-                        numMoves++;
-                    }
-                    else if (color == ChessPiece.Color.BLACK && yf - yi == 1
-                            && (xi - xf == 1 || xf - xi == 1)
-                            && opposingPiece != null
-                            && opposingPiece.getColor() == ChessPiece.Color.WHITE)
-                    {
-                        numMoves++;
-                    }
-                }
-            }
+            int sq = Long.numberOfTrailingZeros(mask);
+            numMoves += Long.bitCount(AttackTables.queenAttacks(sq, occupied) & ~ownPieces);
+        }
+        int king = bits.kingSquare(c);
+        if (king != BitBoard.NO_SQUARE)
+        {
+            numMoves += Long.bitCount(AttackTables.KING_ATTACKS[king] & ~ownPieces);
+        }
+
+        // pawns move one row forward, or two from their starting row, onto
+        // empty squares and capture diagonally
+        long pawns = bits.getPieceMask(c, BitBoard.PAWN);
+        long empty = ~occupied;
+        long pushes;
+        long doublePushes;
+        if (c == BitBoard.WHITE)
+        {
+            pushes = (pawns >>> 8) & empty;
+            doublePushes = ((pushes & WHITE_SKIP_ROW) >>> 8) & empty;
+        }
+        else
+        {
+            pushes = (pawns << 8) & empty;
+            doublePushes = ((pushes & BLACK_SKIP_ROW) << 8) & empty;
+        }
+        numMoves += Long.bitCount(pushes) + Long.bitCount(doublePushes);
+        long enemies = bits.getColorMask(1 - c);
+        for (long mask = pawns; mask != 0; mask &= mask - 1)
+        {
+            int sq = Long.numberOfTrailingZeros(mask);
+            numMoves += Long.bitCount(AttackTables.PAWN_ATTACKS[c][sq] & enemies);
         }
         return numMoves;
     }
@@ -204,91 +225,27 @@ public class BoardRater
         return (blackHangers - whiteHangers) / (float) TOTAL_MATERIAL;
     }
 
-    private int hangValue(ChessBoard cb, ChessPiece.Color color)
-    {
-        int valueOfHanging = 0;
-        ArrayList<ChessPiece> goodPieces = cb.getPieces(color);
-        ArrayList<ChessPiece> badPieces = cb.getPieces(color.opposite());
-        for (int i = 0; i < goodPieces.size(); i++)
-        {
-            boolean isHanging = false;
-            ChessPiece goodCP = goodPieces.get(i);
-            for (int j = 0; j < badPieces.size(); j++)
-            {
-                //case 1: piece is attacked by a lower valued piece
-                if (cb.canCapture(badPieces.get(j), goodCP.xCoord, goodCP.yCoord)
-                        && badPieces.get(j).value < goodCP.value)
-                {
-                    isHanging = true;
-                }
-                //case 2: piece's attackers are worth less than the defenders
-            }
-            ArrayList<ChessPiece> piecesInAction = aimedHere(cb, goodCP.xCoord, goodCP.yCoord);
-            if (!isHanging)
-            {
-                ArrayList<ChessPiece> attackers = new ArrayList<>();
-                ArrayList<ChessPiece> defenders = new ArrayList<>();
-                for (int k = 0; k < piecesInAction.size(); k++)
-                {
-                    if (piecesInAction.get(k).color == color)
-                    {
-                        defenders.add(piecesInAction.get(k));
-                    }
-                    else
-                    {
-                        attackers.add(piecesInAction.get(k));
-                    }
-                }
-
-                if (attackers.isEmpty())
-                {
-                    isHanging = false;
-                }
-                else if (defenders.size() < attackers.size())
-                {
-                    isHanging = true;
-                } //this is rather confusing, but I think it works
-                else if (defenders.size() == attackers.size())
-                {
-                    if (sumValue(defenders, attackers.size() - 1) + goodCP.value
-                            >= sumValue(attackers, attackers.size()))
-                    {
-                        isHanging = true;
-                    }
-                }
-                else if (defenders.size() > attackers.size())
-                {
-                    isHanging = false;
-                }
-            }
-            if (isHanging)
-            {
-                valueOfHanging += goodPieces.get(i).value;
-            }
-        }
-        return valueOfHanging;
-    }
-
     /**
-     * This method finds the sum of the values of the "num"-smallest pieces in
-     * the array, simply summing the entire array if num > length(pieces)
+     * Returns how much material the given color stands to lose on the squares
+     * where its pieces are attacked, working out each exchange with
+     * StaticExchange. Kings are left out, they can't be captured.
      *
-     * @param pieces
-     * @param num
-     * @return
+     * @param cb board to look at
+     * @param color player whose pieces may be hanging
+     * @return int - total value the opponent can win, in ChessPiece values
      */
-    private int sumValue(ArrayList<ChessPiece> pieces, int num)
+    private int hangValue(ChessBoard cb, ChessPiece.Color color)
     {
-        int sum = 0;
-        if (num > pieces.size())
-        {
-            num = pieces.size();
-        }
-        Collections.sort(pieces);
-        for (int i = 0; i < num; i++)
+        BitBoard bits = cb.bitBoard();
+        int c = BitBoard.colorIndex(color);
+        long pieces = bits.getColorMask(c) & ~bits.getPieceMask(c, BitBoard.KING);
+        int valueOfHanging = 0;
+        while (pieces != 0)
         {
-            sum += pieces.get(i).value;
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            valueOfHanging += StaticExchange.threatened(bits, square);
         }
-        return sum;
+        return valueOfHanging;
     }
 }
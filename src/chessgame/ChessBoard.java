@@ -36,42 +36,46 @@ public class ChessBoard implements Serializable
 
     private final ChessPiece[][] pieceArray;
 
+    // kept in step with pieceArray by putPiece, see bitBoard()
+    private final BitBoard bits;
+
     /**
      * This constructor sets up a standard chess game on the board
      */
     public ChessBoard()
     {
         pieceArray = new ChessPiece[WIDTH][HEIGHT];
+        bits = new BitBoard();
         //set up pieces on each side
         for (int i = 0; i < WIDTH; i++)
         {
-            pieceArray[i][PAWN_ROW_W] = new Pawn(ChessPiece.Color.WHITE, i, 6);
-            pieceArray[i][PAWN_ROW_B] = new Pawn(ChessPiece.Color.BLACK, i, 1);
+            putPiece(new Pawn(ChessPiece.Color.WHITE, i, 6), i, PAWN_ROW_W);
+            putPiece(new Pawn(ChessPiece.Color.BLACK, i, 1), i, PAWN_ROW_B);
         }
 
         for (int i = 0; i < 8; i += 7)
         {
-            pieceArray[i][7] = new Rook(ChessPiece.Color.WHITE, i, 7);
-            pieceArray[i][0] = new Rook(ChessPiece.Color.BLACK, i, 0);
+            putPiece(new Rook(ChessPiece.Color.WHITE, i, 7), i, 7);
+            putPiece(new Rook(ChessPiece.Color.BLACK, i, 0), i, 0);
         }
 
         for (int i = 1; i < 7; i += 5)
         {
-            pieceArray[i][7] = new Knight(ChessPiece.Color.WHITE, i, 7);
-            pieceArray[i][0] = new Knight(ChessPiece.Color.BLACK, i, 0);
+            putPiece(new Knight(ChessPiece.Color.WHITE, i, 7), i, 7);
+            putPiece(new Knight(ChessPiece.Color.BLACK, i, 0), i, 0);
         }
 
         for (int i = 2; i < 6; i += 3)
         {
-            pieceArray[i][7] = new Bishop(ChessPiece.Color.WHITE, i, 7);
-            pieceArray[i][0] = new Bishop(ChessPiece.Color.BLACK, i, 0);
+            putPiece(new Bishop(ChessPiece.Color.WHITE, i, 7), i, 7);
+            putPiece(new Bishop(ChessPiece.Color.BLACK, i, 0), i, 0);
         }
 
-        pieceArray[3][7] = new Queen(ChessPiece.Color.WHITE, 3, 7);
-        pieceArray[4][7] = new King(ChessPiece.Color.WHITE, 4, 7);
+        putPiece(new Queen(ChessPiece.Color.WHITE, 3, 7), 3, 7);
+        putPiece(new King(ChessPiece.Color.WHITE, 4, 7), 4, 7);
 
-        pieceArray[3][0] = new Queen(ChessPiece.Color.BLACK, 3, 0);
-        pieceArray[4][0] = new King(ChessPiece.Color.BLACK, 4, 0);
+        putPiece(new Queen(ChessPiece.Color.BLACK, 3, 0), 3, 0);
+        putPiece(new King(ChessPiece.Color.BLACK, 4, 0), 4, 0);
     }
 
     /**
@@ -83,6 +87,7 @@ public class ChessBoard implements Serializable
     public ChessBoard(ChessBoard template)
     {
         pieceArray = new ChessPiece[WIDTH][HEIGHT];
+        bits = new BitBoard();
         if (template == null)
         {
             return;
@@ -95,6 +100,7 @@ public class ChessBoard implements Serializable
                 setPieceAt(template.getCopyOfPieceAt(i, j), i, j);
             }
         }
+        bits.setEnPassantSquare(template.bits.getEnPassantSquare());
     }
 
     /**
@@ -107,6 +113,7 @@ public class ChessBoard implements Serializable
     public ChessBoard(ChessPiece[][] pieces)
     {
         pieceArray = new ChessPiece[WIDTH][HEIGHT];
+        bits = new BitBoard();
         if (pieces == null)
         {
             return;
@@ -130,15 +137,68 @@ public class ChessBoard implements Serializable
     public ChessBoard(List<ChessPiece> pieces)
     {
         pieceArray = new ChessPiece[WIDTH][HEIGHT];
+        bits = new BitBoard();
         for (ChessPiece piece : pieces)
         {
             setPieceAt(piece, piece.getX(), piece.getY());
         }
     }
 
+    /**
+     * Constructor that places the pieces of the given bitboard position on
+     * this chessboard. Kings and rooks on their home squares are marked as
+     * having moved unless the position still has the matching castling right.
+     *
+     * @param position bitboard position to copy from
+     */
+    public ChessBoard(BitBoard position)
+    {
+        pieceArray = new ChessPiece[WIDTH][HEIGHT];
+        bits = new BitBoard();
+        int rights = position.getCastlingRights();
+        long occupied = position.getOccupied();
+        while (occupied != 0)
+        {
+            int square = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            int x = BitBoard.xOf(square);
+            int y = BitBoard.yOf(square);
+            ChessPiece.Color color = BitBoard.colorOf(position.colorAt(square));
+            int type = position.typeAt(square);
+            ChessPiece piece = BitBoard.createPiece(color, type, x, y);
+            if (type == BitBoard.KING || type == BitBoard.ROOK)
+            {
+                piece.hasMoved = true;
+            }
+            putPiece(piece, x, y);
+        }
+
+        setCastlingPiecesUnmoved(rights & BitBoard.CASTLE_WK, K_ROOK_X, HOME_ROW_W);
+        setCastlingPiecesUnmoved(rights & BitBoard.CASTLE_WQ, Q_ROOK_X, HOME_ROW_W);
+        setCastlingPiecesUnmoved(rights & BitBoard.CASTLE_BK, K_ROOK_X, HOME_ROW_B);
+        setCastlingPiecesUnmoved(rights & BitBoard.CASTLE_BQ, Q_ROOK_X, HOME_ROW_B);
+        bits.setEnPassantSquare(position.getEnPassantSquare());
+    }
+
+    /**
+     * Helper for the BitBoard constructor, clears the hasMoved flag of the
+     * king and the given rook if the castling right is present
+     */
+    private void setCastlingPiecesUnmoved(int right, int rookX, int y)
+    {
+        ChessPiece king = pieceArray[KING_X][y];
+        ChessPiece rook = pieceArray[rookX][y];
+        if (right != 0 && king instanceof King && rook instanceof Rook)
+        {
+            king.hasMoved = false;
+            rook.hasMoved = false;
+        }
+    }
+
     /**
      * This method makes the given move and returns a copy of the resulting
-     * board.
+     * board. Use makeMove and unmakeMove instead where the board itself can be
+     * changed, this copies all 64 squares.
      *
      * @param cm move to execute
      * @return ChessBoard - resulting board position after the move
@@ -150,16 +210,220 @@ public class ChessBoard implements Serializable
         {
             return nextNode;
         }
-        int xi, xf, yi, yf;
-        xi = cm.piece.xCoord;
-        yi = cm.piece.yCoord;
-        xf = cm.getXDest();
-        yf = cm.getYDest();
-        nextNode.replacePiece(xi, yi, xf, yf);
-        //TODO - consider castling, where two pieces are moved
+        nextNode.makeMove(cm);
         return nextNode;
     }
 
+    /**
+     * Plays the given move on this board without checking that it is legal.
+     * Handles captures, castling, en passant and promotion (to the piece named
+     * by promotionPiece, or a Queen if none is named).
+     *
+     * @param cm move to execute, cm.piece gives the square moved from
+     * @return UndoRecord - record to pass to unmakeMove, null if there was no
+     * piece to move
+     */
+    public UndoRecord makeMove(ChessMove cm)
+    {
+        UndoRecord undo = new UndoRecord();
+        return makeMove(cm, undo) ? undo : null;
+    }
+
+    /**
+     * Plays the given move on this board without checking that it is legal,
+     * filling in the given record instead of allocating a new one.
+     *
+     * @param cm move to execute, cm.piece gives the square moved from
+     * @param undo record to fill in, needed by unmakeMove
+     * @return boolean - false if there was no piece to move, in which case the
+     * board is unchanged
+     */
+    public boolean makeMove(ChessMove cm, UndoRecord undo)
+    {
+        if (cm == null || cm.piece == null)
+        {
+            return false;
+        }
+        int xi = cm.piece.xCoord;
+        int yi = cm.piece.yCoord;
+        int xf = cm.getXDest();
+        int yf = cm.getYDest();
+        if (!areIndicesInBounds(xi, yi) || !areIndicesInBounds(xf, yf)
+                || pieceArray[xi][yi] == null)
+        {
+            return false;
+        }
+        ChessPiece mover = pieceArray[xi][yi];
+        int promotion = cm.promotes ? Move.typeOfLetter(cm.promotionPiece) : Move.NO_PIECE;
+        makeMove(xi, yi, xf, yf, cm.takesWithEP, isCastling(cm, mover, xi), promotion, undo);
+        return true;
+    }
+
+    /**
+     * Plays the given packed move (see Move) on this board without checking
+     * that it is legal, filling in the given record
+     *
+     * @param move packed move, as made by MoveGenerator
+     * @param undo record to fill in, needed by unmakeMove
+     */
+    public void makeMove(int move, UndoRecord undo)
+    {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        makeMove(BitBoard.xOf(from), BitBoard.yOf(from), BitBoard.xOf(to), BitBoard.yOf(to),
+                Move.isEnPassant(move), Move.isCastle(move), Move.promotion(move), undo);
+    }
+
+    /**
+     * Moves the piece on (xi, yi) to (xf, yf), along with everything else the
+     * move involves
+     *
+     * @param enPassant whether the pawn beside the mover is captured
+     * @param castles whether the rook on the side moved to goes with the king
+     * @param promotion BitBoard type a pawn promotes to, or Move.NO_PIECE
+     */
+    private void makeMove(int xi, int yi, int xf, int yf, boolean enPassant, boolean castles,
+            int promotion, UndoRecord undo)
+    {
+        ChessPiece mover = pieceArray[xi][yi];
+        undo.enPassantSquare = bits.getEnPassantSquare();
+        undo.moverHadMoved = mover.hasMoved;
+        undo.promotedPawn = null;
+        undo.captured = pieceArray[xf][yf];
+        undo.capturedX = xf;
+        undo.capturedY = yf;
+        bits.setEnPassantSquare(BitBoard.NO_SQUARE);
+
+        if (enPassant)
+        {
+            // the captured pawn is beside the mover, not on the destination
+            undo.captured = pieceArray[xf][yi];
+            undo.capturedY = yi;
+            putPiece(null, xf, yi);
+        }
+        if (castles && pieceArray[castleRookX(xf)][yi] != null)
+        {
+            int rookXi = castleRookX(xf);
+            int rookXf = xf == K_KNIGHT_X ? K_BISHOP_X : QUEEN_X;
+            undo.rookHadMoved = pieceArray[rookXi][yi].hasMoved;
+            shiftPiece(rookXi, yi, rookXf, yf);
+        }
+        shiftPiece(xi, yi, xf, yf);
+
+        if (mover instanceof Pawn)
+        {
+            if (yf - yi == 2 || yi - yf == 2)
+            {
+                bits.setEnPassantSquare(BitBoard.square(xi, (yi + yf) / 2));
+            }
+            else if (promotion != Move.NO_PIECE)
+            {
+                ChessPiece promoted = BitBoard.createPiece(mover.color, promotion, xf, yf);
+                promoted.hasMoved = true;
+                undo.promotedPawn = mover;
+                putPiece(promoted, xf, yf);
+            }
+        }
+    }
+
+    /**
+     * Takes back a move made with makeMove. Moves must be taken back in the
+     * reverse order they were made.
+     *
+     * @param cm move that was made
+     * @param undo record that makeMove filled in for this move
+     */
+    public void unmakeMove(ChessMove cm, UndoRecord undo)
+    {
+        int xi = cm.piece.xCoord;
+        int yi = cm.piece.yCoord;
+        int xf = cm.getXDest();
+        int yf = cm.getYDest();
+        ChessPiece mover = undo.promotedPawn != null ? undo.promotedPawn : pieceArray[xf][yf];
+        unmakeMove(xi, yi, xf, yf, isCastling(cm, mover, xi), undo);
+    }
+
+    /**
+     * Takes back a packed move made with makeMove(int, UndoRecord)
+     *
+     * @param move packed move that was made
+     * @param undo record that makeMove filled in for this move
+     */
+    public void unmakeMove(int move, UndoRecord undo)
+    {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        unmakeMove(BitBoard.xOf(from), BitBoard.yOf(from), BitBoard.xOf(to), BitBoard.yOf(to),
+                Move.isCastle(move), undo);
+    }
+
+    /**
+     * Moves the piece on (xf, yf) back to (xi, yi) and puts back whatever the
+     * move took or moved with it
+     */
+    private void unmakeMove(int xi, int yi, int xf, int yf, boolean castles, UndoRecord undo)
+    {
+        ChessPiece mover = undo.promotedPawn != null ? undo.promotedPawn : pieceArray[xf][yf];
+
+        shiftPiece(xf, yf, xi, yi);
+        if (undo.promotedPawn != null)
+        {
+            putPiece(mover, xi, yi);
+        }
+        mover.movePiece(xi, yi);
+        mover.hasMoved = undo.moverHadMoved;
+
+        int rookXf = xf == K_KNIGHT_X ? K_BISHOP_X : QUEEN_X;
+        if (castles && pieceArray[rookXf][yf] instanceof Rook)
+        {
+            int rookXi = castleRookX(xf);
+            shiftPiece(rookXf, yf, rookXi, yi);
+            pieceArray[rookXi][yi].hasMoved = undo.rookHadMoved;
+        }
+        if (undo.captured != null)
+        {
+            putPiece(undo.captured, undo.capturedX, undo.capturedY);
+        }
+        bits.setEnPassantSquare(undo.enPassantSquare);
+    }
+
+    /**
+     * Whether the given move by the given piece from column xi is castling,
+     * either because the move says so or because a king is moving two squares
+     * sideways
+     */
+    private static boolean isCastling(ChessMove cm, ChessPiece mover, int xi)
+    {
+        if (cm.getMoveType() != ChessMove.Type.NORMAL)
+        {
+            return true;
+        }
+        int xDiff = cm.getXDest() - xi;
+        return mover instanceof King && (xDiff == 2 || xDiff == -2);
+    }
+
+    /**
+     * Returns the x coordinate of the rook that castles with a king moving to
+     * the given x coordinate
+     */
+    private static int castleRookX(int kingXDest)
+    {
+        return kingXDest == K_KNIGHT_X ? K_ROOK_X : Q_ROOK_X;
+    }
+
+    /**
+     * Moves the piece object at (xi, yi) to (xf, yf) without copying it, and
+     * marks it as having moved. Whatever was on (xf, yf) is overwritten.
+     */
+    private void shiftPiece(int xi, int yi, int xf, int yf)
+    {
+        ChessPiece piece = pieceArray[xi][yi];
+        putPiece(null, xi, yi);
+        piece.movePiece(xf, yf);
+        piece.hasMoved = true;
+        putPiece(piece, xf, yf);
+    }
+
     /**
      * This method determines whether a piece can capture another piece at the
      * given coordinates, i.e., whether the piece can move there, except for
@@ -178,33 +442,90 @@ public class ChessBoard implements Serializable
         {
             return false;
         }
-        if (cp instanceof Pawn)
+        if (!areIndicesInBounds(cp.xCoord, cp.yCoord)
+                || !areIndicesInBounds(xDest, yDest))
         {
-            if (cp.yCoord + 1 == yDest && cp.color == ChessPiece.Color.BLACK)
-            {
-                if (cp.xCoord + 1 == xDest || cp.xCoord - 1 == xDest)
-                {
-                    return true;
-                }
-            }
-            if (cp.yCoord - 1 == yDest && cp.color == ChessPiece.Color.WHITE)
-            {
-                if (cp.xCoord + 1 == xDest || cp.xCoord - 1 == xDest)
-                {
-                    return true;
-                }
-            }
             return false;
         }
-        else // cp is not a Pawn, so capturing is same as moving
+        return (attacksFrom(cp) & (1L << BitBoard.square(xDest, yDest))) != 0;
+    }
+
+    /**
+     * Returns the squares attacked by the given piece from its current square,
+     * looked up in AttackTables. Sliding pieces are stopped by the first piece
+     * in their way, which is included since it could be captured.
+     *
+     * @param cp piece whose attacks are wanted, must be on the board
+     * @return long - mask of attacked squares
+     */
+    private long attacksFrom(ChessPiece cp)
+    {
+        int square = BitBoard.square(cp.xCoord, cp.yCoord);
+        if (cp instanceof Pawn)
         {
-            if (cp.canMove(xDest, yDest)
-                    && pathIsClear(cp, xDest, yDest))
-            {
-                return true;
-            }
+            return AttackTables.PAWN_ATTACKS[BitBoard.colorIndex(cp.color)][square];
         }
-        return false;
+        else if (cp instanceof Knight)
+        {
+            return AttackTables.KNIGHT_ATTACKS[square];
+        }
+        else if (cp instanceof Bishop)
+        {
+            return AttackTables.bishopAttacks(square, bits.getOccupied());
+        }
+        else if (cp instanceof Rook)
+        {
+            return AttackTables.rookAttacks(square, bits.getOccupied());
+        }
+        else if (cp instanceof Queen)
+        {
+            return AttackTables.queenAttacks(square, bits.getOccupied());
+        }
+        return AttackTables.KING_ATTACKS[square];
+    }
+
+    /**
+     * Determines whether any piece of the given color attacks the square at
+     * (x, y). Looks outward from the square with each kind of attack rather
+     * than checking every piece.
+     *
+     * @param x x coordinate of the square
+     * @param y y coordinate of the square
+     * @param attacker color of the pieces that might attack
+     * @return boolean - true if a piece of that color could capture on (x, y)
+     */
+    public boolean isAttacked(int x, int y, ChessPiece.Color attacker)
+    {
+        if (!areIndicesInBounds(x, y))
+        {
+            return false;
+        }
+        return isAttacked(BitBoard.square(x, y), BitBoard.colorIndex(attacker));
+    }
+
+    /**
+     * Square number version of isAttacked(int, int, Color)
+     *
+     * @param square square that might be attacked
+     * @param attacker BitBoard.WHITE or BitBoard.BLACK
+     * @return boolean - true if a piece of that color could capture there
+     */
+    boolean isAttacked(int square, int attacker)
+    {
+        long occupied = bits.getOccupied();
+        long queens = bits.getPieceMask(attacker, BitBoard.QUEEN);
+        // a pawn of the defending color on this square would attack exactly
+        // the squares that attacking pawns capture from
+        return (AttackTables.PAWN_ATTACKS[1 - attacker][square]
+                & bits.getPieceMask(attacker, BitBoard.PAWN)) != 0
+                || (AttackTables.KNIGHT_ATTACKS[square]
+                & bits.getPieceMask(attacker, BitBoard.KNIGHT)) != 0
+                || (AttackTables.KING_ATTACKS[square]
+                & bits.getPieceMask(attacker, BitBoard.KING)) != 0
+                || (AttackTables.bishopAttacks(square, occupied)
+                & (bits.getPieceMask(attacker, BitBoard.BISHOP) | queens)) != 0
+                || (AttackTables.rookAttacks(square, occupied)
+                & (bits.getPieceMask(attacker, BitBoard.ROOK) | queens)) != 0;
     }
 
     /**
@@ -237,25 +558,9 @@ public class ChessBoard implements Serializable
             return false;
         }
 
-        for (int i = 0; i < WIDTH; i++)
-        {
-            for (int j = 0; j < HEIGHT; j++)
-            {
-                if (spaceIsEmpty(i, j))
-                {
-                    continue;
-                }
-                cp = getCopyOfPieceAt(i, j);
-                if (cp.getColor() == color.opposite()
-                        && (canCapture(cp, KING_X, y)
-                        || canCapture(cp, K_BISHOP_X, y)
-                        || canCapture(cp, K_KNIGHT_X, y)))
-                {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return !isAttacked(KING_X, y, color.opposite())
+                && !isAttacked(K_BISHOP_X, y, color.opposite())
+                && !isAttacked(K_KNIGHT_X, y, color.opposite());
     }
 
     /**
@@ -288,26 +593,10 @@ public class ChessBoard implements Serializable
         {
             return false;
         }
-        for (int i = 0; i < WIDTH; i++)
-        {
-            for (int j = 0; j < HEIGHT; j++)
-            {
-                if (spaceIsEmpty(i, j))
-                {
-                    continue;
-                }
 
-                cp = getCopyOfPieceAt(i, j);
-                if (cp.getColor() == color.opposite()
-                        && (canCapture(cp, Q_BISHOP_X, y)
-                        || canCapture(cp, QUEEN_X, y)
-                        || canCapture(cp, KING_X, y)))
-                {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return !isAttacked(Q_BISHOP_X, y, color.opposite())
+                && !isAttacked(QUEEN_X, y, color.opposite())
+                && !isAttacked(KING_X, y, color.opposite());
     }
 
     public boolean canMovePiece(ChessPiece mover, int xf, int yf)
@@ -316,14 +605,10 @@ public class ChessBoard implements Serializable
         {
             return false;
         }
-        int xi = mover.getX();
-        int yi = mover.getY();
-        ChessBoard movedBoard = new ChessBoard(this);
         if (mover.canMove(xf, yf) && pathIsClear(mover, xf, yf)
                 && spaceIsEmpty(xf, yf))
         {
-            movedBoard.replacePiece(xi, yi, xf, yf);
-            if (!movedBoard.checkForCheck(mover.getColor()))
+            if (!leadsToCheck(new ChessMove(mover, xf, yf)))
             {
                 return true;   // move is successful
             }
@@ -356,13 +641,11 @@ public class ChessBoard implements Serializable
             return false;
         }
 
-        ChessBoard movedBoard = new ChessBoard(this);
-        ChessPiece defender = movedBoard.getCopyOfPieceAt(x, y);
-        if (movedBoard.canCapture(myAttacker, x, y) && defender != null
+        ChessPiece defender = getCopyOfPieceAt(x, y);
+        if (canCapture(myAttacker, x, y) && defender != null
                 && defender.getColor() != myAttacker.getColor())
         {
-            movedBoard.replacePiece(xAtt, yAtt, x, y);
-            if (!movedBoard.checkForCheck(myAttacker.getColor()))
+            if (!leadsToCheck(new ChessMove(myAttacker, x, y)))
             {
                 replacePiece(xAtt, yAtt, x, y);
                 return true;   // piece captured successfully
@@ -418,27 +701,12 @@ public class ChessBoard implements Serializable
      */
     public boolean checkForCheck(ChessPiece.Color color)
     {
-        King king = findKing(color);
-        if (king == null)
+        int kingSquare = bits.kingSquare(BitBoard.colorIndex(color));
+        if (kingSquare == BitBoard.NO_SQUARE)
         {
             return false;
         }
-
-        ChessPiece piece;
-        for (int i = 0; i < WIDTH; i++)
-        {
-            for (int j = 0; j < HEIGHT; j++)
-            {
-                piece = getCopyOfPieceAt(i, j);
-                if (piece != null
-                        && canCapture(piece, king.xCoord, king.yCoord)
-                        && piece.getColor() != color)
-                {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return isAttacked(kingSquare, BitBoard.colorIndex(color.opposite()));
     }
     
     public boolean checkForGameOver(ChessPiece.Color playerToMove)
@@ -494,134 +762,35 @@ public class ChessBoard implements Serializable
      */
     private boolean checkSingleKing(ChessPiece.Color c)
     {
-        int numKings = 0;
-        for (int i = 0; i < WIDTH; i++)
-        {
-            for (int j = 0; j < HEIGHT; j++)
-            {
-                ChessPiece current = getCopyOfPieceAt(i, j);
-                if (current == null)
-                {
-                    continue;
-                }
-                if (current instanceof King && current.getColor() == c)
-                {
-                    numKings++;
-                    if (numKings > 1)
-                    {
-                        return false;
-                    }
-                }
-            }
-        }
-        return numKings == 1;
-    }
-
-    /**
-     * Helper method to check all squares that a bishop will move through when
-     * moving from (xi,yi) to (x,y)
-     *
-     * @param xi original x coordinate
-     * @param yi original y coordinate
-     * @param x destination x coordinate
-     * @param y destination y coordinate
-     * @return boolean - whether bishop has an unobstructed path
-     */
-    private boolean clearPathBishop(int xi, int yi, int x, int y)
-    {
-        for (int i = 1; i < 8; i++) //see Bishop.canMove(int,int)
-        {
-            if (xi + i == x && yi + i == y)
-            {
-                for (int j = 1; j < i; j++)
-                {
-                    if (!spaceIsEmpty(xi + j, yi + j))
-                    {
-                        return false;
-                    }
-                }
-            }
-            if (xi + i == x && yi - i == y)
-            {
-                for (int j = 1; j < i; j++)
-                {
-                    if (!spaceIsEmpty(xi + j, yi - j))
-                    {
-                        return false;
-                    }
-                }
-            }
-            if (xi - i == x && yi + i == y)
-            {
-                for (int j = 1; j < i; j++)
-                {
-                    if (!spaceIsEmpty(xi - j, yi + j))
-                    {
-                        return false;
-                    }
-                }
-            }
-            if (xi - i == x && yi - i == y)
-            {
-                for (int j = 1; j < i; j++)
-                {
-                    if (!spaceIsEmpty(xi - j, yi - j))
-                    {
-                        return false;
-                    }
-                }
-            }
-        }
-        return true;
+        return bits.count(BitBoard.colorIndex(c), BitBoard.KING) == 1;
     }
 
     /**
-     * Helper method to check all squares that a rook will move through when
-     * moving from (xi,yi) to (x,y)
+     * Two ChessBoards are equal if for each square, both boards have equal
+     * pieces at that location. Boards with different Zobrist keys are told
+     * apart without looking at the squares.
      *
-     * @param xi original x coordinate
-     * @param yi original y coordinate
-     * @param x destination x coordinate
-     * @param y destination y coordinate
-     * @return true - whether rook has an unobstructed path
+     * @param obj ChessBoard to compare this to
+     * @return boolean - true if this equals obj, false otherwise
      */
-    private boolean clearPathRook(int xi, int yi, int x, int y)
+    @Override
+    public boolean equals(Object obj)
     {
-        if (y < yi && xi == x)
-        {
-            for (int i = y + 1; i < yi; i++)
-            {
-                if (!spaceIsEmpty(x, i))
-                {
-                    return false;
-                }
-            }
-        }
-        if (yi < y && xi == x)
+        if (!(obj instanceof ChessBoard))
         {
-            for (int i = yi + 1; i < y; i++)
-            {
-                if (!spaceIsEmpty(x, i))
-                {
-                    return false;
-                }
-            }
+            return false;
         }
-        if (x < xi && yi == y)
+        ChessBoard cb = (ChessBoard) obj;
+        if (bits.getPieceKey() != cb.bits.getPieceKey())
         {
-            for (int i = x + 1; i < xi; i++)
-            {
-                if (!spaceIsEmpty(i, y))
-                {
-                    return false;
-                }
-            }
+            return false;
         }
-        if (xi < x && yi == y)
+        // same piece of the same color on every square means equal masks
+        for (int color = BitBoard.WHITE; color <= BitBoard.BLACK; color++)
         {
-            for (int i = xi + 1; i < x; i++)
+            for (int type = 0; type < BitBoard.NUM_TYPES; type++)
             {
-                if (!spaceIsEmpty(i, y))
+                if (bits.getPieceMask(color, type) != cb.bits.getPieceMask(color, type))
                 {
                     return false;
                 }
@@ -631,45 +800,32 @@ public class ChessBoard implements Serializable
     }
 
     /**
-     * Two ChessBoards are equal if for each square, both boards have equal
-     * pieces at that location
+     * Returns a hash code consistent with equals, taken from the Zobrist key
+     * of the pieces
      *
-     * @param obj ChessBoard to compare this to
-     * @return boolean - true if this equals obj, false otherwise
+     * @return int - hash code of this board
      */
     @Override
-    public boolean equals(Object obj)
+    public int hashCode()
     {
-        if (!(obj instanceof ChessBoard))
-        {
-            return false;
-        }
-        else
-        {
-            ChessBoard cb = (ChessBoard) obj;
-            ChessPiece lhs, rhs;
-            for (int i = 0; i < 8; i++)
-            {
-                for (int j = 0; j < 8; j++)
-                {
-                    lhs = getCopyOfPieceAt(i, j);
-                    rhs = cb.getCopyOfPieceAt(i, j);
-                    if (lhs == null && rhs == null)
-                    {
-                        continue;
-                    }
-                    if (lhs == null || rhs == null)
-                    {
-                        return false;
-                    }
-                    if (!lhs.equals(rhs))
-                    {
-                        return false;
-                    }
-                }
-            }
-        }
-        return true;
+        long key = bits.getPieceKey();
+        return (int) (key ^ (key >>> 32));
+    }
+
+    /**
+     * Returns the Zobrist key of this position with the given player to move.
+     * The key covers the pieces, which are kept up to date as moves are made,
+     * as well as the castling rights and en passant square, so it can be used
+     * to look up positions and to detect repetitions.
+     *
+     * @param sideToMove player whose move is next
+     * @return long - 64-bit hash key of the position
+     */
+    public long getZobristKey(ChessPiece.Color sideToMove)
+    {
+        return bits.getPieceKey() ^ Zobrist.sideKey(sideToMove)
+                ^ Zobrist.castlingKey(getCastlingRights())
+                ^ Zobrist.enPassantKey(bits.getEnPassantSquare());
     }
 
     /**
@@ -713,6 +869,53 @@ public class ChessBoard implements Serializable
         return moveList;
     }
 
+    /**
+     * This method finds all legal captures for all pieces of the given color,
+     * the same captures findAllMoves finds without the other moves. Doesn't
+     * consider en passant.
+     *
+     * @param color color that is moving
+     * @return ArrayList - list of all capturing moves
+     */
+    public ArrayList<ChessMove> findAllCaptures(ChessPiece.Color color)
+    {
+        ArrayList<ChessMove> moveList = new ArrayList<>();
+        long enemyPieces = bits.getColorMask(color.opposite());
+        for (ChessPiece current : getPieces(color))
+        {
+            addMovesTo(current, attacksFrom(current) & enemyPieces, moveList);
+        }
+        return moveList;
+    }
+
+    /**
+     * Writes all legal moves for the given color, including castling, en
+     * passant and every promotion, into the given array as packed moves (see
+     * Move). Unlike findAllMoves, nothing is allocated.
+     *
+     * @param color color that is moving
+     * @param moves array to write to, at least MoveGenerator.MAX_MOVES long
+     * @return int - number of moves written
+     */
+    public int generateMoves(ChessPiece.Color color, int[] moves)
+    {
+        return MoveGenerator.generateMoves(bits, BitBoard.colorIndex(color),
+                getCastlingRights(), moves);
+    }
+
+    /**
+     * Writes all legal captures and Queen promotions for the given color into
+     * the given array as packed moves, see generateMoves
+     *
+     * @param color color that is moving
+     * @param moves array to write to, at least MoveGenerator.MAX_MOVES long
+     * @return int - number of moves written
+     */
+    public int generateCaptures(ChessPiece.Color color, int[] moves)
+    {
+        return MoveGenerator.generateCaptures(bits, BitBoard.colorIndex(color), moves);
+    }
+
     /**
      * This method finds all legal moves for this piece on this board. Doesn't
      * consider castling or en passant.
@@ -727,47 +930,63 @@ public class ChessBoard implements Serializable
             return null;
         }
         ArrayList<ChessMove> moveList = new ArrayList<>();
+        long ownPieces = bits.getColorMask(cp.getColor());
 
-        HashSet<Vector> moveVectors = cp.getMoveSet();
-        for (Vector vector : moveVectors)
+        // Knights and Kings go wherever the table says, and Rooks, Bishops and
+        // Queens as far as the first piece in each direction, unless a piece
+        // of their own color is there
+        if (!(cp instanceof Pawn))
+        {
+            addMovesTo(cp, attacksFrom(cp) & ~ownPieces, moveList);
+            return moveList;
+        }
+
+        // Pawns only move forward onto empty squares
+        for (Vector vector : cp.getMoveSet())
         {
             int xf = vector.getXDiff() + cp.getX();
             int yf = vector.getYDiff() + cp.getY();
-
-            ChessMove possMove = new ChessMove(cp, xf, yf);
-            if (leadsToCheck(possMove) || !areIndicesInBounds(xf, yf))         //if it puts mover in check, disregard
+            if (!areIndicesInBounds(xf, yf))
             {
                 continue;
             }
+
+            ChessMove possMove = new ChessMove(cp, xf, yf);
             if (pathIsClear(cp, xf, yf) // no pieces in the way
-                    && spaceIsEmpty(xf, yf))    // space is empty
+                    && spaceIsEmpty(xf, yf)    // space is empty
+                    && !leadsToCheck(possMove))   //if it puts mover in check, disregard
             {
                 moveList.add(possMove);
             }
-            else if (canCapture(cp, xf, yf)
-                    && spaceIsEnemy(xf, yf, cp.getColor()))
-            {
-                possMove.captures = true;
-                moveList.add(possMove);
-            }
         }
         // Pawns are the only piece that capture differently than they move
-        if (cp instanceof Pawn)
+        long enemyPieces = bits.getColorMask(cp.getColor().opposite());
+        addMovesTo(cp, attacksFrom(cp) & enemyPieces, moveList);
+        return moveList;
+    }
+
+    /**
+     * Adds a move for cp to each square in the given mask, unless the move
+     * would leave cp's king in check. Moves to occupied squares are marked as
+     * captures.
+     *
+     * @param cp piece that is moving
+     * @param targets squares that cp can move to
+     * @param moveList list to add the moves to
+     */
+    private void addMovesTo(ChessPiece cp, long targets, ArrayList<ChessMove> moveList)
+    {
+        while (targets != 0)
         {
-            for (Vector vector : ((Pawn) cp).getCaptureMoveSet())
+            int square = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            ChessMove possMove = new ChessMove(cp, BitBoard.xOf(square), BitBoard.yOf(square));
+            possMove.captures = !bits.isEmpty(square);
+            if (!leadsToCheck(possMove))
             {
-                int xf = vector.getXDiff() + cp.getX();
-                int yf = vector.getYDiff() + cp.getY();
-                
-                ChessMove possMove = new ChessMove(cp, xf, yf);
-                if (spaceIsEnemy(xf, yf, cp.getColor()))
-                {
-                    possMove.captures = true;
-                    moveList.add(possMove);
-                }
+                moveList.add(possMove);
             }
         }
-        return moveList;
     }
 
     /**
@@ -779,14 +998,12 @@ public class ChessBoard implements Serializable
      */
     private King findKing(ChessPiece.Color c)
     {
-        for (ChessPiece current : getPieces(c))
+        int square = bits.kingSquare(BitBoard.colorIndex(c));
+        if (square == BitBoard.NO_SQUARE)
         {
-            if (current instanceof King)
-            {
-                return (King) current;
-            }
+            return null;
         }
-        return null;
+        return (King) getCopyOfPieceAt(BitBoard.xOf(square), BitBoard.yOf(square));
     }
 
     public ChessMove getCastleKSMove(ChessPiece.Color color)
@@ -862,20 +1079,7 @@ public class ChessBoard implements Serializable
      */
     public ArrayList<ChessPiece> getPieces()
     {
-        ArrayList<ChessPiece> tempList = new ArrayList<>();
-        ChessPiece piece;
-        for (int i = 0; i < WIDTH; i++)
-        {
-            for (int j = 0; j < HEIGHT; j++)
-            {
-                piece = getCopyOfPieceAt(i, j);
-                if (piece != null)
-                {
-                    tempList.add(piece);
-                }
-            }
-        }
-        return tempList;
+        return copyPiecesIn(bits.getOccupied());
     }
 
     /**
@@ -886,18 +1090,23 @@ public class ChessBoard implements Serializable
      */
     public ArrayList<ChessPiece> getPieces(ChessPiece.Color color)
     {
-        ArrayList<ChessPiece> pieces = new ArrayList<>();
-        ChessPiece piece;
-        for (int i = 0; i < WIDTH; i++)
+        return copyPiecesIn(bits.getColorMask(color));
+    }
+
+    /**
+     * Returns copies of the pieces on the squares set in the given mask
+     *
+     * @param mask squares whose pieces should be included
+     * @return ArrayList - list of pieces on those squares
+     */
+    private ArrayList<ChessPiece> copyPiecesIn(long mask)
+    {
+        ArrayList<ChessPiece> pieces = new ArrayList<>(Long.bitCount(mask));
+        while (mask != 0)
         {
-            for (int j = 0; j < HEIGHT; j++)
-            {
-                piece = getCopyOfPieceAt(i, j);
-                if (piece != null && piece.getColor() == color)
-                {
-                    pieces.add(piece);
-                }
-            }
+            int square = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            pieces.add(getCopyOfPieceAt(BitBoard.xOf(square), BitBoard.yOf(square)));
         }
         return pieces;
     }
@@ -929,7 +1138,8 @@ public class ChessBoard implements Serializable
 
     /**
      * This method determines whether a move will result in the moving player
-     * being in check.
+     * being in check. The move is made and taken back on this board, so no
+     * copy is needed.
      *
      * @param cm move to execute
      * @return - whether or not check is a result of this move
@@ -940,8 +1150,14 @@ public class ChessBoard implements Serializable
         {
             return false;
         }
-        ChessBoard temp = advancePosition(cm);
-        return temp.checkForCheck(cm.piece.getColor());
+        UndoRecord undo = new UndoRecord();
+        if (!makeMove(cm, undo))
+        {
+            return false;
+        }
+        boolean inCheck = checkForCheck(cm.piece.getColor());
+        unmakeMove(cm, undo);
+        return inCheck;
     }
 
     /**
@@ -1027,18 +1243,16 @@ public class ChessBoard implements Serializable
                 clear = spaceIsEmpty(xi, yi + 1);
             }
         }
-        else if (mover instanceof Rook)
-        {
-            clear = clearPathRook(xi, yi, x, y);
-        }
-        else if (mover instanceof Bishop)
-        {
-            clear = clearPathBishop(xi, yi, x, y);
-        }
-        else if (mover instanceof Queen)
+        else if (mover instanceof Rook || mover instanceof Bishop
+                || mover instanceof Queen)
         {
-            // Queen moves like a Bishop and Rook put together
-            clear = clearPathBishop(xi, yi, x, y) && clearPathRook(xi, yi, x, y);
+            // every square strictly between start and destination must be
+            // empty, there are none if the two aren't on a line
+            if (areIndicesInBounds(xi, yi) && areIndicesInBounds(x, y))
+            {
+                long between = AttackTables.BETWEEN[BitBoard.square(xi, yi)][BitBoard.square(x, y)];
+                clear = (between & bits.getOccupied()) == 0;
+            }
         }
         else
         {
@@ -1092,7 +1306,89 @@ public class ChessBoard implements Serializable
         {
             myPiece = null;
         }
-        pieceArray[x][y] = myPiece;
+        putPiece(myPiece, x, y);
+    }
+
+    /**
+     * Stores the given piece object at (x, y) without copying it, and updates
+     * the bitboard kept alongside pieceArray. Every change to pieceArray goes
+     * through here.
+     *
+     * @param cp piece to place, or null to empty the square
+     * @param x column, columns start at 0
+     * @param y row, rows start at 0
+     */
+    private void putPiece(ChessPiece cp, int x, int y)
+    {
+        int square = BitBoard.square(x, y);
+        ChessPiece old = pieceArray[x][y];
+        if (old != null)
+        {
+            bits.clearPiece(square, BitBoard.colorIndex(old.color), BitBoard.typeOf(old));
+        }
+        if (cp != null)
+        {
+            bits.setPiece(square, BitBoard.colorIndex(cp.color), BitBoard.typeOf(cp));
+        }
+        pieceArray[x][y] = cp;
+    }
+
+    /**
+     * Returns the bitboard that is kept in step with this board's pieces. It
+     * is shared, not copied, so callers must not modify it; use toBitBoard for
+     * a position of one's own.
+     *
+     * @return BitBoard - piece masks of this board
+     */
+    BitBoard bitBoard()
+    {
+        return bits;
+    }
+
+    /**
+     * Creates a bitboard position from this board with the given player to
+     * move. Castling rights come from whether the kings and rooks have moved.
+     *
+     * @param sideToMove player whose move is next
+     * @return BitBoard - copy of this position
+     */
+    public BitBoard toBitBoard(ChessPiece.Color sideToMove)
+    {
+        BitBoard position = new BitBoard(bits);
+        position.setSideToMove(sideToMove);
+        position.setCastlingRights(getCastlingRights());
+        return position;
+    }
+
+    /**
+     * Works out the castling rights of both players from whether their kings
+     * and rooks are still unmoved on their home squares. Does not consider
+     * whether castling is possible right now.
+     *
+     * @return int - castling rights as BitBoard.CASTLE_ flags
+     */
+    public int getCastlingRights()
+    {
+        int rights = 0;
+        if (isUnmoved(KING_X, HOME_ROW_W, BitBoard.KING))
+        {
+            rights |= isUnmoved(K_ROOK_X, HOME_ROW_W, BitBoard.ROOK) ? BitBoard.CASTLE_WK : 0;
+            rights |= isUnmoved(Q_ROOK_X, HOME_ROW_W, BitBoard.ROOK) ? BitBoard.CASTLE_WQ : 0;
+        }
+        if (isUnmoved(KING_X, HOME_ROW_B, BitBoard.KING))
+        {
+            rights |= isUnmoved(K_ROOK_X, HOME_ROW_B, BitBoard.ROOK) ? BitBoard.CASTLE_BK : 0;
+            rights |= isUnmoved(Q_ROOK_X, HOME_ROW_B, BitBoard.ROOK) ? BitBoard.CASTLE_BQ : 0;
+        }
+        return rights;
+    }
+
+    private boolean isUnmoved(int x, int y, int type)
+    {
+        ChessPiece cp = pieceArray[x][y];
+        ChessPiece.Color home = y == HOME_ROW_W ? ChessPiece.Color.WHITE : ChessPiece.Color.BLACK;
+        return cp != null && !cp.hasMoved && cp.color == home
+                && BitBoard.typeOf(cp) == type;
     }
 
     /**
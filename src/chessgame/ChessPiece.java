@@ -1,7 +1,7 @@
 package chessgame;
 
 import java.io.Serializable;
-import java.util.HashSet;
+import java.util.Set;
 
 /**
  * This class represents the data and behavior of a generic chess piece. It
@@ -122,11 +122,18 @@ public abstract class ChessPiece implements Comparable<ChessPiece>, Serializable
             return false;
         }
         Vector possMove = new Vector(x - xCoord, y - yCoord);
-        HashSet<Vector> moveSet = getMoveSet();
+        Set<Vector> moveSet = getMoveSet();
         return moveSet.contains(possMove);
     }
 
-    public abstract HashSet<Vector> getMoveSet();
+    /**
+     * Returns the moves this piece could make on an empty board, relative to
+     * its square. The set may be shared by every piece of the kind, so it
+     * must not be changed.
+     *
+     * @return Set - vectors this piece can move by
+     */
+    public abstract Set<Vector> getMoveSet();
 
     /*
     This will input a chess piece and copy all the attributes to the 
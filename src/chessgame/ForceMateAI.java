@@ -6,166 +6,378 @@ import java.util.ArrayList;
  * This AI is used for determining if it is possible and how to force the
  * opposing player into checkmate.
  *
+ * The search is depth-first over a game tree kept in a NodeStore. Each node
+ * holds only its move and position key, the board is changed with makeMove
+ * and unmakeMove as the search goes down and up the tree. A move for the
+ * attacker is proven when some move forces mate; a position for the defender
+ * is proven when every reply still loses. As soon as a branch is refuted its
+ * nodes are given back to the store, so only the line being searched and the
+ * proof found so far are kept in memory. If the store's memory limit is
+ * reached, the branches that didn't fit are left unknown and the search
+ * carries on with the rest, see isSearchComplete.
+ *
+ * With the PROOF_NUMBER algorithm the mate is looked for by a
+ * ProofNumberSearch instead, which follows the most forcing lines first and
+ * keeps only a fixed size table, so it can solve longer mates.
+ *
  * @author John
  */
 public class ForceMateAI extends AI
 {
 
+    public static final int DEFAULT_NODE_STORE_MB = 64;
+
+    // added to the score of checking moves so they are kept when trimming
+    private static final int CHECK_BONUS = 100000;
+
+    private int nodeStoreMB = DEFAULT_NODE_STORE_MB;
+    private NodeStore store;
+    private int proofTableMB = ProofTable.DEFAULT_SIZE_MB;
+    private ProofNumberSearch proofSearch;
+    private boolean searchComplete = true;
+
+    // state of the current solveForMate
+    private ChessBoard board;
+    private boolean trim;
+    private int[][] moveLists;
+    private int[] moveScores;
+    private UndoRecord[] undoStack;
+
+    public ForceMateAI()
+    {
+        super();
+    }
+
     /**
-     * Generates the game tree to the given number of moves and determines
-     * whether checkmate can be forced by the given player.
+     * Creates a solver for the given position
+     *
+     * @param cb board to solve, copied
+     * @param playerToMove color of player who has the next move
+     */
+    public ForceMateAI(ChessBoard cb, ChessPiece.Color playerToMove)
+    {
+        super(cb, playerToMove);
+    }
+
+    /**
+     * Searches up to the given number of moves and determines whether
+     * checkmate can be forced by the given player, who must be the one to
+     * move.
      *
      * @param player side trying to force checkmate
-     * @param moves depth to search through
-     * @return list containing the moves used to force mate, null if mate isn't
-     * forced
+     * @param moves number of moves by player to mate in
+     * @param quickly if true only the MAX_BRANCH most forcing moves of player
+     * are tried at each turn, so a mate found is real but one may be missed.
+     * Not used by the PROOF_NUMBER algorithm, which is selective on its own.
+     * @return list containing the moves used to force mate, starting with
+     * player's first move, empty if mate isn't forced
      */
     public ArrayList<ChessMove> solveForMate(ChessPiece.Color player, int moves,
             boolean quickly)
     {
-        Tree<GameState> tree = generateGameTree(2 * moves, quickly);
         pathToMate = new ArrayList<>();
-        if (mateIsFound(tree))
+        if (moves < 1)
+        {
+            return pathToMate;
+        }
+        if (algorithm == Algorithm.PROOF_NUMBER)
+        {
+            ProofNumberSearch search = getProofNumberSearch();
+            MoveList line = search.solve(gameBoard, player, moves);
+            searchComplete = search.isComplete();
+            addToPath(line, player);
+            return pathToMate;
+        }
+        NodeStore nodes = getNodeStore();
+        nodes.clear();
+        board = new ChessBoard(gameBoard);
+        trim = quickly;
+        int plies = 2 * moves - 1;
+        moveLists = new int[plies + 1][MoveGenerator.MAX_MOVES];
+        moveScores = new int[MoveGenerator.MAX_MOVES];
+        undoStack = new UndoRecord[plies + 1];
+        for (int i = 0; i < undoStack.length; i++)
         {
-            tracePathToMate(player, tree);
+            undoStack[i] = new UndoRecord();
         }
+
+        int root = nodes.addRoot(board.getZobristKey(player));
+        if (root != NodeStore.NO_NODE
+                && attackerMates(root, player, plies, 0) == NodeStore.PROVEN)
+        {
+            tracePathToMate(root, player);
+        }
+        searchComplete = !nodes.isLimitReached();
+        board = null;
+        moveLists = null;
         return pathToMate;
     }
 
     /**
-     * Assembles a list of moves that lead to the opponent being checkmated.
+     * Finds out whether the attacker, to move in the position of the given
+     * node, can force mate within the given number of plies
      *
-     * @param player player who has won after these moves are played
-     * @param tree positions that are being searched through
-     * @return true if mate has been found, false otherwise
+     * @param node node of the current position
+     * @param attacker player trying to force mate
+     * @param pliesLeft plies left to mate in, at least 1
+     * @param ply plies from the root
+     * @return byte - PROVEN, DISPROVEN, or UNKNOWN if the memory limit kept
+     * part of the tree from being searched
      */
-    private boolean tracePathToMate(ChessPiece.Color player, Tree<GameState> tree)
+    private byte attackerMates(int node, ChessPiece.Color attacker, int pliesLeft, int ply)
     {
-        // if position is checkmate, search is unnecessary
-        if (tree.info.board.checkForMate(player.opposite()))
+        int[] moves = moveLists[ply];
+        int count = board.generateMoves(attacker, moves);
+        if (trim)
+        {
+            count = keepMostForcing(attacker, moves, count, ply);
+        }
+        int first = store.allocateChildren(node, count);
+        if (first == NodeStore.NO_NODE)
         {
-            return true;
+            return NodeStore.UNKNOWN;
         }
 
-        for (Tree<GameState> child : tree.children)
+        byte result = NodeStore.DISPROVEN;
+        UndoRecord undo = undoStack[ply];
+        for (int i = 0; i < count && result != NodeStore.PROVEN; i++)
         {
-            if (child.info.board.checkForMate(player.opposite()))
+            int child = first + i;
+            store.setMove(child, moves[i]);
+            board.makeMove(moves[i], undo);
+            store.setKey(child, board.getZobristKey(attacker.opposite()));
+            byte childResult = defenderIsMated(child, attacker.opposite(), pliesLeft - 1, ply + 1);
+            board.unmakeMove(moves[i], undo);
+
+            if (childResult == NodeStore.PROVEN)
+            {
+                result = NodeStore.PROVEN;
+            }
+            else if (childResult == NodeStore.UNKNOWN)
             {
-                pathToMate.add(child.info.move);
-                return true;
+                result = NodeStore.UNKNOWN;
             }
         }
+        if (result != NodeStore.PROVEN)
+        {
+            store.releaseChildren(node);
+        }
+        store.setStatus(node, result);
+        return result;
+    }
+
+    /**
+     * Finds out whether the defender, to move in the position of the given
+     * node, is mated or can't avoid mate within the given number of plies
+     *
+     * @param node node of the current position
+     * @param defender player trying to avoid mate
+     * @param pliesLeft plies the attacker has left
+     * @param ply plies from the root
+     * @return byte - PROVEN if mate can't be avoided, DISPROVEN if it can, or
+     * UNKNOWN if the memory limit kept part of the tree from being searched
+     */
+    private byte defenderIsMated(int node, ChessPiece.Color defender, int pliesLeft, int ply)
+    {
+        int[] moves = moveLists[ply];
+        int count = board.generateMoves(defender, moves);
+        byte result;
+        if (count == 0)
+        {
+            // checkmate, or stalemate which doesn't count
+            result = board.checkForCheck(defender) ? NodeStore.PROVEN : NodeStore.DISPROVEN;
+            store.setStatus(node, result);
+            return result;
+        }
+        if (pliesLeft == 0)
+        {
+            store.setStatus(node, NodeStore.DISPROVEN);
+            return NodeStore.DISPROVEN;
+        }
+        int first = store.allocateChildren(node, count);
+        if (first == NodeStore.NO_NODE)
+        {
+            return NodeStore.UNKNOWN;
+        }
 
-        for (Tree<GameState> child : tree.children)
+        result = NodeStore.PROVEN;
+        UndoRecord undo = undoStack[ply];
+        for (int i = 0; i < count && result != NodeStore.DISPROVEN; i++)
         {
-            for (Tree<GameState> grandChild : child.children)
+            int child = first + i;
+            store.setMove(child, moves[i]);
+            board.makeMove(moves[i], undo);
+            store.setKey(child, board.getZobristKey(defender.opposite()));
+            byte childResult = attackerMates(child, defender.opposite(), pliesLeft - 1, ply + 1);
+            board.unmakeMove(moves[i], undo);
+
+            if (childResult != NodeStore.PROVEN)
             {
-                if (tracePathToMate(player, grandChild))
-                {
-                    pathToMate.add(grandChild.info.move);
-                    return true;
-                }
+                result = childResult == NodeStore.DISPROVEN ? NodeStore.DISPROVEN
+                        : NodeStore.UNKNOWN;
             }
         }
-        return false;
+        if (result != NodeStore.PROVEN)
+        {
+            store.releaseChildren(node);
+        }
+        store.setStatus(node, result);
+        return result;
     }
 
-    private int bfsFindMate(Tree<GameState> gameTree)
+    /**
+     * Moves the MAX_BRANCH most forcing moves to the front: checks first,
+     * then the moves that leave the attacker best off
+     *
+     * @return int - number of moves kept
+     */
+    private int keepMostForcing(ChessPiece.Color attacker, int[] moves, int count, int ply)
     {
-        // search breadth first
-        // return number of moves to mate
-        ArrayList<Tree<GameState>> states = new ArrayList<>(),
-                nextLevel = new ArrayList<>();
-        states.add(gameTree);
-        int count = 0;
-        boolean mateFound = false;
-        System.out.println("In BFS Find Mate");
-        while (!states.isEmpty() && !mateFound)
-        {
-            Tree<GameState> current = states.get(0);
-            states.remove(0);
-            if (current.info.board.checkForMate(ChessPiece.Color.BLACK))
+        UndoRecord undo = undoStack[ply];
+        for (int i = 0; i < count; i++)
+        {
+            board.makeMove(moves[i], undo);
+            int score = -rater.evaluate(board, attacker.opposite());
+            if (board.checkForCheck(attacker.opposite()))
             {
-                mateFound = true;
-                return count;
+                score += CHECK_BONUS;
             }
-            nextLevel.addAll(current.children);
-            if (states.isEmpty())
+            board.unmakeMove(moves[i], undo);
+            moveScores[i] = score;
+        }
+        int kept = Math.min(count, MAX_BRANCH);
+        for (int i = 0; i < kept; i++)
+        {
+            int best = i;
+            for (int j = i + 1; j < count; j++)
             {
-                states = nextLevel;
-                nextLevel = new ArrayList<>();
-                count++;
-                System.out.println("Count: " + count);
+                if (moveScores[j] > moveScores[best])
+                {
+                    best = j;
+                }
             }
+            int score = moveScores[best];
+            moveScores[best] = moveScores[i];
+            moveScores[i] = score;
+            int move = moves[best];
+            moves[best] = moves[i];
+            moves[i] = move;
         }
-        return -1;
+        return kept;
     }
 
-    private boolean mateIsFound(Tree<GameState> tree)
+    /**
+     * Assembles a list of moves that lead to the opponent being checkmated,
+     * following the proven moves from the root. Where every reply of the
+     * defender loses, the first one is shown.
+     *
+     * @param root root of the proven tree
+     * @param player player who has won after these moves are played
+     */
+    private void tracePathToMate(int root, ChessPiece.Color player)
     {
-        int numMoves;
-        switch (algorithm)
+        MoveList line = new MoveList();
+        int node = root;
+        while (store.getChildCount(node) > 0)
         {
-            case BFS:
-                numMoves = bfsFindMate(tree);
-                break;
-            default:
-                numMoves = -1;
+            int child = store.getFirstChild(node);
+            int last = child + store.getChildCount(node) - 1;
+            while (child < last && store.getStatus(child) != NodeStore.PROVEN)
+            {
+                child++;
+            }
+            line.add(store.getMove(child));
+            node = child;
         }
-        return numMoves != -1;
+        addToPath(line, player);
     }
 
     /**
-     * Determines whether for the given game tree, the player passed in has a
-     * move that wins the game regardless of what the opponent plays. The
-     * opponent is assumed to have just moved and gameTree branches from there.
+     * Adds the given moves, played from the position being solved, to
+     * pathToMate, marking the ones that give check or mate
      *
-     * @param player side who might be guaranteed to win
-     * @param gameTree positions (moves) that are being considered
-     * @return true if player can always checkmate their opponent, false
-     * otherwise
+     * @param line packed moves, starting with player's
+     * @param player player who makes the first move
      */
-    private boolean forcesMate(ChessPiece.Color player, Tree<GameState> gameTree)
+    private void addToPath(MoveList line, ChessPiece.Color player)
     {
-        // if position is checkmate, search is unnecessary
-        if (gameTree.info.board.checkForMate(player.opposite()))
+        ChessBoard replay = new ChessBoard(gameBoard);
+        UndoRecord undo = new UndoRecord();
+        ChessPiece.Color toMove = player;
+        for (int i = 0; i < line.size(); i++)
         {
-            return true;
+            int move = line.get(i);
+            ChessMove cm = Move.toChessMove(move, replay);
+            replay.makeMove(move, undo);
+            toMove = toMove.opposite();
+            cm.givesCheck = replay.checkForCheck(toMove);
+            cm.givesMate = cm.givesCheck && replay.checkForMate(toMove);
+            pathToMate.add(cm);
         }
+    }
 
-        // if no more children, mate is forced by opponent on this side or depth
-        // has been reached
-        if (gameTree.children.isEmpty())
+    /**
+     * Returns the store holding the game tree, to see how much memory the
+     * last solveForMate used
+     *
+     * @return NodeStore - store of game tree nodes
+     */
+    public NodeStore getNodeStore()
+    {
+        if (store == null)
         {
-            return false;
+            store = new NodeStore(nodeStoreMB);
         }
+        return store;
+    }
 
-        for (Tree<GameState> child : gameTree.children)
-        {
-            if (child.info.board.checkForMate(player.opposite()))
-            {
-                return true;
-            }
-        }
+    /**
+     * Sets how much memory the game tree may use. A search that needs more
+     * leaves the branches that don't fit unsearched rather than failing.
+     *
+     * @param sizeMB most memory for the game tree, in megabytes
+     */
+    public void setNodeStoreSize(int sizeMB)
+    {
+        nodeStoreMB = sizeMB;
+        store = null;
+    }
 
-        // check each child: if for every move the opponent takes there is a move
-        // for this side that forces checkmate, mate is forced as well.
-        for (Tree<GameState> child : gameTree.children)
+    /**
+     * Returns the proof-number search used by the PROOF_NUMBER algorithm,
+     * e.g. to set its node limit
+     *
+     * @return ProofNumberSearch - search with its table
+     */
+    public ProofNumberSearch getProofNumberSearch()
+    {
+        if (proofSearch == null)
         {
-            boolean leadsToMate = false;
-            for (Tree<GameState> grandChild : child.children)
-            {
-                if (forcesMate(player, grandChild))
-                {
-                    leadsToMate = true;
-                }
-            }
-            // opponent has move that prevents them being checkmated
-            if (!leadsToMate)
-            {
-                return false;
-            }
+            proofSearch = new ProofNumberSearch(new ProofTable(proofTableMB));
         }
-        return true;
+        return proofSearch;
+    }
+
+    /**
+     * Sets how much memory the table of the PROOF_NUMBER algorithm uses
+     *
+     * @param sizeMB table size, in megabytes
+     */
+    public void setProofTableSize(int sizeMB)
+    {
+        proofTableMB = sizeMB;
+        proofSearch = null;
+    }
+
+    /**
+     * Tells whether the last solveForMate searched every move it meant to.
+     * If not, the memory or node limit was reached and an empty result
+     * doesn't mean there is no mate.
+     *
+     * @return boolean - true if the search finished
+     */
+    public boolean isSearchComplete()
+    {
+        return searchComplete;
     }
 }
@@ -1,64 +1,375 @@
 package chessgame;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import chessgui.GameRequest;
+import chessgui.GameTask;
 
 /**
  * Controller class for the chess game. Handles moving pieces as well as
  * checking for capturing, castling, and promotion. Ensures that players are
  * alternating turns and makes the CPU's move if in single player mode.
  *
+ * When run on its own thread, a FIND_BEST_MOVE is searched on a second
+ * thread, so the tasks behind it don't wait for the search. STOP_SEARCH ends
+ * the search early with the best move found so far, and tasks that change the
+ * position stop it and throw its result away.
+ *
  * @author John Polus
  */
 public class GameController implements Runnable
 {
 
+    // "CHG1", first int of a file written by saveGameToFile
+    private static final int GAME_FILE_MAGIC = 0x43484731;
+    private static final int EMPTY_SQUARE = -1;
+    // a ponder search may take this many times the engine's last move time
+    private static final int PONDER_TIME_FACTOR = 2;
+
     private ChessBoard board;
     private ChessPiece.Color playerToMove;
-    public AI deepBlue;
-    private final ArrayList<ChessMove> moveList;
+    // the engine, kept for the whole game so what it learns carries over
+    public final AI deepBlue;
+    // moves played since startPosition, packed as in Move
+    private final MoveList moveList;
+    private ChessBoard startPosition;
+    private ChessPiece.Color startingPlayer;
     private final BlockingQueue<GameRequest> tasks;
-    private final BlockingQueue<GameRequest> responses;
+    private final ResponseListener listener;
+
+    /**
+     * A FIND_BEST_MOVE task together with the AI and limits of its search,
+     * kept so the search can be stopped from the controller's thread. A
+     * search started by pondering has no request until the predicted move is
+     * played and a FIND_BEST_MOVE comes in for it, see attach.
+     */
+    private class SearchTask implements Runnable
+    {
+
+        private GameRequest request;
+        private final AI ai;
+        private final SearchLimits limits;
+        private final ChessBoard position;
+        private final ChessPiece.Color toMove;
+        // key of the controller's board when the search started, to tell if
+        // it is still the current position
+        private long positionKey;
+        // when pondering, the reply that was assumed, and whether it was played
+        private int ponderMove = Move.NONE;
+        private boolean ponderHit;
+        private final long startTime;
+        // set once the result is no longer wanted, e.g. the position changed
+        private volatile boolean discarded;
+        private volatile boolean finished;
+        private ChessMove bestMove;
+        // the move found and the reply the search expects, packed, set when
+        // the search finishes
+        private volatile int packedBestMove = Move.NONE;
+        private volatile int expectedReply = Move.NONE;
+
+        public SearchTask(GameRequest request, ChessBoard position,
+                ChessPiece.Color toMove, SearchLimits limits)
+        {
+            this.request = request;
+            this.position = new ChessBoard(position);
+            this.limits = limits;
+            positionKey = position.getZobristKey(toMove);
+            startTime = System.currentTimeMillis();
+            this.toMove = toMove;
+            ai = deepBlue;
+        }
+
+        /**
+         * Searches and returns the response, which has no move if the search
+         * was discarded
+         *
+         * @return GameRequest - response to the FIND_BEST_MOVE, null if it
+         * hasn't been asked for yet
+         */
+        public GameRequest search()
+        {
+            ai.updatePosition(position, toMove);
+            ChessMove move = ai.findBestMove(limits);
+            if (move != null)
+            {
+                packedBestMove = Move.fromChessMove(move, position);
+                SearchResult result = ai.getLastSearchResult();
+                if (result.principalVariation.size() > 1)
+                {
+                    ChessBoard after = new ChessBoard(position);
+                    after.makeMove(packedBestMove, new UndoRecord());
+                    expectedReply = Move.fromChessMove(result.principalVariation.get(1), after);
+                }
+            }
+            synchronized (this)
+            {
+                bestMove = move;
+                finished = true;
+                return request == null ? null : response();
+            }
+        }
+
+        private GameRequest response()
+        {
+            GameRequest response = new GameRequest(request.task, null, false);
+            if (bestMove != null && !discarded)
+            {
+                response.info = bestMove;
+                response.success = true;
+            }
+            return response;
+        }
+
+        @Override
+        public void run()
+        {
+            GameRequest response = search();
+            if (response != null)
+            {
+                sendResponse(response);
+            }
+        }
+
+        /**
+         * Makes a pondering search the answer to the given FIND_BEST_MOVE. It
+         * goes on for the time the request allows, on top of the time already
+         * spent pondering, keeping what it has found so far.
+         *
+         * @param findBestMove request to answer
+         * @param requested limits the request asked for
+         * @return GameRequest - the response if the search had already
+         * finished, otherwise null and it is sent when the search is done
+         */
+        public synchronized GameRequest attach(GameRequest findBestMove,
+                SearchLimits requested)
+        {
+            request = findBestMove;
+            if (finished)
+            {
+                return response();
+            }
+            long elapsed = System.currentTimeMillis() - startTime;
+            limits.timeMillis = requested.timeMillis > 0 ? elapsed + requested.timeMillis : 0;
+            limits.nodeLimit = requested.nodeLimit;
+            limits.maxDepth = requested.maxDepth;
+            return null;
+        }
+
+        public boolean isRunning()
+        {
+            return !finished;
+        }
+
+        public boolean isPondering()
+        {
+            return ponderMove != Move.NONE && request == null && !discarded;
+        }
+
+        /**
+         * Ends the search as soon as it has a move
+         *
+         * @param discard true to answer with no move, false to answer with
+         * the best move found so far
+         */
+        public void stop(boolean discard)
+        {
+            discarded |= discard;
+            limits.stop();
+        }
+    }
+
+    // search that may still be going, on the search thread or in process
+    private volatile SearchTask currentSearch;
+    private ExecutorService searchThread;
+    // if true, run searches the reply it expects while the opponent thinks
+    private volatile boolean pondering;
 
     /**
      * Default constructor, sets board to standard starting position and human
      * player is White.
      *
-     * @param tasks
-     * @param responses
+     * @param tasks queue the tasks to do are taken from, in order
+     * @param listener told the result of each task as soon as it is done
      */
-    public GameController(BlockingQueue<GameRequest> tasks, BlockingQueue<GameRequest> responses)
+    public GameController(BlockingQueue<GameRequest> tasks, ResponseListener listener)
     {
         board = new ChessBoard();
         playerToMove = ChessPiece.Color.WHITE;
         deepBlue = new AI(board, playerToMove);
-        moveList = new ArrayList<>();
+        deepBlue.setAlgorithm(AI.Algorithm.ALPHA_BETA);
+        moveList = new MoveList();
+        startPosition = new ChessBoard(board);
+        startingPlayer = playerToMove;
         this.tasks = tasks;
-        this.responses = responses;
+        this.listener = listener;
     }
 
+    /**
+     * Creates a controller without a task queue, whose tasks are given to
+     * process directly, as GameSessionService does. run must not be called.
+     */
+    public GameController()
+    {
+        this(null, null);
+    }
+
+    /**
+     * Does the tasks in the queue one at a time, waiting for the next one
+     * without using the CPU while there is none. FIND_BEST_MOVE is handed to
+     * the search thread and answered from there when it is done. Runs until
+     * the thread is interrupted.
+     */
+    @Override
     public void run()
     {
-        GameRequest task, response;
-        while (true)
+        searchThread = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "GameController Search");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try
+        {
+            while (true)
+            {
+                GameRequest task = tasks.take();
+                if (task.task == GameTask.FIND_BEST_MOVE)
+                {
+                    startSearch(task);
+                }
+                else
+                {
+                    sendResponse(doTask(task));
+                }
+            }
+        } catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        } finally
+        {
+            stopSearch(true);
+            searchThread.shutdown();
+        }
+    }
+
+    /**
+     * Starts searching for the best move on the search thread. If pondering
+     * already searches this position, that search is kept and answers the
+     * request instead. Any other search still going is stopped and its
+     * result thrown away.
+     */
+    private void startSearch(GameRequest request)
+    {
+        SearchLimits limits = limitsOf(request);
+        if (currentSearch != null && currentSearch.isPondering() && currentSearch.ponderHit
+                && currentSearch.positionKey == board.getZobristKey(playerToMove))
         {
-            //check queue
-            while ((task = tasks.poll()) != null)
+            GameRequest response = currentSearch.attach(request, limits);
+            if (response != null)
             {
-                response = doTask(task);
                 sendResponse(response);
             }
+            return;
+        }
+        stopSearch(true);
+        currentSearch = new SearchTask(request, board, playerToMove, limits);
+        searchThread.execute(currentSearch);
+    }
+
+    /**
+     * Starts pondering after the engine's move was played: the reply the
+     * engine expects is played on a copy of the board and the position after
+     * it searched, for at most PONDER_TIME_FACTOR times the time the engine's
+     * move was given, so a long think by the opponent doesn't keep a core
+     * busy. If the opponent plays that reply, the search goes on as the
+     * engine's next search (a ponder hit), otherwise its result is thrown
+     * away along with what the engine's tables learned, since it was about a
+     * line that wasn't played.
+     *
+     * @param answered search whose move was just played
+     */
+    private void startPondering(SearchTask answered)
+    {
+        int reply = answered.expectedReply;
+        if (reply == Move.NONE)
+        {
+            return;
+        }
+        ChessBoard predicted = new ChessBoard(board);
+        predicted.makeMove(reply, new UndoRecord());
+        // the time the request asked for, not what the search ended up with
+        long moveTime = limitsOf(answered.request).timeMillis;
+        if (moveTime <= 0)
+        {
+            moveTime = SearchLimits.DEFAULT_TIME_MILLIS;
+        }
+        currentSearch = new SearchTask(null, predicted, playerToMove.opposite(),
+                SearchLimits.time(PONDER_TIME_FACTOR * moveTime));
+        currentSearch.positionKey = board.getZobristKey(playerToMove);
+        currentSearch.ponderMove = reply;
+        searchThread.execute(currentSearch);
+    }
+
+    /**
+     * Returns the limits for a search of the given request. The request's own
+     * SearchLimits are copied, since the search may stop its limits and the
+     * caller may use them again for a later request.
+     */
+    private static SearchLimits limitsOf(GameRequest request)
+    {
+        return request.info instanceof SearchLimits
+                ? new SearchLimits((SearchLimits) request.info)
+                : SearchLimits.time(SearchLimits.DEFAULT_TIME_MILLIS);
+    }
+
+    /**
+     * Stops the search started by run, if one is going
+     *
+     * @param discard true if the result is no longer wanted
+     * @return boolean - whether a search was stopped
+     */
+    private boolean stopSearch(boolean discard)
+    {
+        SearchTask search = currentSearch;
+        if (search == null || !search.isRunning())
+        {
+            return false;
         }
+        search.stop(discard);
+        return true;
+    }
+
+    /**
+     * Makes the search going on, if any, answer now with the best move found
+     * so far, as STOP_SEARCH does. May be called from any thread, for callers
+     * of process, whose STOP_SEARCH would only be done after the search it
+     * should stop.
+     *
+     * @return boolean - whether a search was stopped
+     */
+    public boolean stopSearch()
+    {
+        return stopSearch(false);
     }
 
     private void sendResponse(GameRequest response)
     {
-        responses.add(response);
+        listener.responseReady(response);
     }
 
     private GameRequest task_SetBoardPosition(GameRequest request)
@@ -82,21 +393,21 @@ public class GameController implements Runnable
         {
             return response;
         }
-        if (move.getMoveType() != ChessMove.Type.NORMAL)
-        {
-            response.success = board.castle(move);
-        }
-        else if (move.captures)
+        // the engine's own move, if it is the one the last search found
+        SearchTask answered = currentSearch;
+        long keyBefore = board.getZobristKey(playerToMove);
+        int packedMove = legalMoveLike(Move.fromChessMove(move, board));
+        if (packedMove == Move.NONE)
         {
-            response.success = board.capturePiece(move.piece, move.getXDest(), move.getYDest());
-        }
-        else // normal, non-capturing move
-        {
-            response.success = board.movePiece(move.piece, move.getXDest(), move.getYDest());
+            return response;
         }
-        // check if any pawns made it to the opposite side of the board
-        Pawn pawn = (Pawn) board.needPromotion();
-        if (pawn != null)
+        // played the same way as the engine and the game loader play moves,
+        // so en passant and castling rights stay the same for all of them
+        board.makeMove(packedMove, new UndoRecord());
+        response.success = true;
+        // a pawn that made it to the opposite side is a queen for now, the
+        // player may still pick another piece with promoteToThisType
+        if (Move.promotion(packedMove) != Move.NO_PIECE)
         {
             move.promotes = true;
         }
@@ -107,22 +418,89 @@ public class GameController implements Runnable
         if (response.success)
         {
             playerToMove = playerToMove.opposite();
-            moveList.add(move);
+            moveList.add(packedMove);
+            if (currentSearch != null && currentSearch.isPondering()
+                    && !currentSearch.ponderHit && currentSearch.positionKey == keyBefore
+                    && currentSearch.ponderMove == packedMove)
+            {
+                // ponder hit, the search goes on as the one for this position
+                currentSearch.ponderHit = true;
+                currentSearch.positionKey = board.getZobristKey(playerToMove);
+                return response;
+            }
+            boolean ponderMiss = currentSearch != null && currentSearch.isPondering()
+                    && !currentSearch.ponderHit;
+            stopSearch(true);
+            if (ponderMiss)
+            {
+                forgetPonderSearch();
+            }
+            if (pondering && searchThread != null && answered != null
+                    && answered.positionKey == keyBefore
+                    && answered.packedBestMove == packedMove && !answered.isRunning())
+            {
+                startPondering(answered);
+            }
         }
         return response;
     }
 
-    private GameRequest task_FindBestMove(GameRequest request)
+    /**
+     * Looks for the legal move of the player to move with the same squares and
+     * promotion as the given one. The other parts of a move built from a
+     * ChessMove, like en passant, may be missing, so they are taken from the
+     * legal move.
+     *
+     * @param packedMove move to look for, packed as in Move
+     * @return int - the legal move, Move.NONE if there is none
+     */
+    private int legalMoveLike(int packedMove)
     {
-        GameRequest response = new GameRequest(request.task, null, false);
-        deepBlue = new AI(board, playerToMove);
-        ChessMove bestMove = deepBlue.findBestMove();
-        if (bestMove == null)
+        if (packedMove == Move.NONE)
         {
-            return response;
+            return Move.NONE;
         }
-        response.info = bestMove;
-        response.success = true;
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = board.generateMoves(playerToMove, moves);
+        for (int i = 0; i < count; i++)
+        {
+            if (Move.from(moves[i]) == Move.from(packedMove)
+                    && Move.to(moves[i]) == Move.to(packedMove)
+                    && Move.promotion(moves[i]) == Move.promotion(packedMove))
+            {
+                return moves[i];
+            }
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * Request may have a SearchLimits as its info, telling how long the AI may
+     * think. Without one, the AI searches for DEFAULT_TIME_MILLIS. The search
+     * is done right away on the calling thread, run uses the search thread
+     * instead. Another thread can end it early with stopSearch.
+     *
+     * @param request
+     * @return
+     */
+    private GameRequest task_FindBestMove(GameRequest request)
+    {
+        SearchTask search = new SearchTask(request, board, playerToMove, limitsOf(request));
+        currentSearch = search;
+        return search.search();
+    }
+
+    /**
+     * Makes the running FIND_BEST_MOVE answer now with the best move it has
+     * found so far. Succeeds if there was a search to stop.
+     *
+     * @param request
+     * @return
+     */
+    private GameRequest task_StopSearch(GameRequest request)
+    {
+        GameRequest response = new GameRequest(request.task, null, false);
+        response.success = stopSearch(false);
         return response;
     }
 
@@ -191,6 +569,18 @@ public class GameController implements Runnable
         return new GameRequest();
     }
 
+    /**
+     * Does the given task right away on the calling thread and returns its
+     * result, for callers that order the tasks themselves
+     *
+     * @param request task to do
+     * @return GameRequest - response to the task
+     */
+    public GameRequest process(GameRequest request)
+    {
+        return doTask(request);
+    }
+
     private GameRequest doTask(GameRequest request)
     {
         switch (request.task)
@@ -203,6 +593,8 @@ public class GameController implements Runnable
                 return task_PlayMove(request);
             case FIND_BEST_MOVE:
                 return task_FindBestMove(request);
+            case STOP_SEARCH:
+                return task_StopSearch(request);
             case FIND_MOVES_FOR_PIECE:
                 return task_FindMovesForPiece(request);
             default:
@@ -215,6 +607,111 @@ public class GameController implements Runnable
         return board.getPieces();
     }
 
+    /**
+     * Turns pondering on or off. When on, and the controller runs on its own
+     * thread, the engine goes on thinking while the opponent does: once the
+     * move it found is played, it searches the position after the reply it
+     * expects. Off by default. A ponder search already going when it is
+     * turned off still runs until its time is up or the next move.
+     *
+     * @param ponder true to think on the opponent's time
+     */
+    public void setPondering(boolean ponder)
+    {
+        pondering = ponder;
+    }
+
+    public boolean isPondering()
+    {
+        return pondering;
+    }
+
+    /**
+     * Sets the algorithm FIND_BEST_MOVE searches with. Defaults to ALPHA_BETA,
+     * on a single thread. Should not be called while a search is running.
+     *
+     * @param algorithm algorithm for the engine to use
+     */
+    public void setAlgorithm(AI.Algorithm algorithm)
+    {
+        deepBlue.setAlgorithm(algorithm);
+    }
+
+    /**
+     * Sets how many threads FIND_BEST_MOVE searches with when the algorithm
+     * is PARALLEL. Defaults to the number of processors, which suits a single
+     * game but not many games sharing the machine. Should not be called while
+     * a search is running.
+     *
+     * @param threads number of threads, at least 1
+     */
+    public void setSearchThreads(int threads)
+    {
+        deepBlue.setThreads(threads);
+    }
+
+    /**
+     * Sets how much memory the engine's transposition table may use. Defaults
+     * to TranspositionTable.DEFAULT_SIZE_MB, which suits a single game but not
+     * many games sharing the machine. Should not be called while a search is
+     * running.
+     *
+     * @param sizeMB size of the table in megabytes
+     */
+    public void setHashSize(int sizeMB)
+    {
+        deepBlue.setHashSize(sizeMB);
+    }
+
+    /**
+     * Frees the memory of the engine's tables, for a game that won't be
+     * played for a while or at all. The next search starts without anything
+     * learned. Should not be called while a search is running.
+     */
+    public void releaseEngine()
+    {
+        deepBlue.releaseTables();
+    }
+
+    /**
+     * Clears the engine's tables after a ponder miss. The pondering search
+     * may still be finishing on the search thread, so they are cleared there,
+     * after it and before the next search.
+     */
+    private void forgetPonderSearch()
+    {
+        searchThread.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                deepBlue.clearTables();
+            }
+        });
+    }
+
+    /**
+     * Starts the engine on a new game, clearing what it learned about the
+     * old one. A search may still be finishing on the search thread, so the
+     * engine is reset there, after it.
+     */
+    private void resetEngine()
+    {
+        if (searchThread == null)
+        {
+            deepBlue.newGame();
+            return;
+        }
+        searchThread.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                deepBlue.newGame();
+            }
+        });
+    }
+
     public ChessPiece.Color getPlayerToMove()
     {
         return playerToMove;
@@ -225,26 +722,67 @@ public class GameController implements Runnable
         playerToMove = color;
     }
 
+    /**
+     * Returns the moves played so far as ChessMoves, for display. The moves
+     * are kept packed, so they are played out again from the start position
+     * to fill in the pieces and whether each one gives check or mate.
+     *
+     * @return ArrayList - moves played since the game started
+     */
     public ArrayList<ChessMove> getMoveList()
+    {
+        ArrayList<ChessMove> moves = new ArrayList<>();
+        ChessBoard replay = new ChessBoard(startPosition);
+        ChessPiece.Color color = startingPlayer;
+        UndoRecord undo = new UndoRecord();
+        for (int i = 0; i < moveList.size(); i++)
+        {
+            int move = moveList.get(i);
+            ChessMove cm = Move.toChessMove(move, replay);
+            replay.makeMove(move, undo);
+            color = color.opposite();
+            cm.givesCheck = replay.checkForCheck(color);
+            cm.givesMate = cm.givesCheck && replay.checkForMate(color);
+            moves.add(cm);
+        }
+        return moves;
+    }
+
+    /**
+     * Returns the moves played so far, packed as in Move
+     *
+     * @return MoveList - moves played since the game started
+     */
+    public MoveList getMoves()
     {
         return moveList;
     }
 
     public boolean promoteToThisType(ChessPiece piece)
     {
-        Pawn pawn = (Pawn) board.needPromotion();
-        if (pawn == null || piece instanceof King || piece instanceof Pawn)
+        if (moveList.isEmpty() || piece instanceof King || piece instanceof Pawn)
         {
             return false;
         }
-        board.setPieceAt(piece, pawn.xCoord, pawn.yCoord);
+        // PLAY_MOVE already promoted the pawn, to a queen unless told otherwise
+        int last = moveList.size() - 1;
+        int move = moveList.get(last);
+        if (Move.promotion(move) == Move.NO_PIECE)
+        {
+            return false;
+        }
+        int to = Move.to(move);
+        board.setPieceAt(piece, BitBoard.xOf(to), BitBoard.yOf(to));
+        moveList.set(last, Move.withPromotion(move, BitBoard.typeOf(piece)));
         return true;
     }
 
     /**
      * Sets the board with the given list of pieces IF the resulting position is
      * legal. If position is illegal, does nothing. Criteria for legality are
-     * listed in ChessBoard.checkPositionIsLegal()
+     * listed in ChessBoard.checkPositionIsLegal(). The moves played so far are
+     * cleared, the game now starts from this position, and a search still
+     * going is stopped.
      *
      * @param pieces - list of pieces specifying the board position to set up
      * @param playerToMove - the player whose move it is next
@@ -257,8 +795,13 @@ public class GameController implements Runnable
         this.playerToMove = playerToMove;
         if (temp.checkPositionIsLegal())
         {
+            // pondering has no time limit, it would go on with the old position
+            stopSearch(true);
             board = temp;
-            deepBlue = new AI(temp, playerToMove);
+            resetEngine();
+            startPosition = new ChessBoard(temp);
+            startingPlayer = playerToMove;
+            moveList.clear();
             return true;
         }
         return false;
@@ -268,7 +811,6 @@ public class GameController implements Runnable
     {
         playerToMove = ChessPiece.Color.WHITE;
         setBoardPosition(new ChessBoard().getPieces(), playerToMove);
-        moveList.clear();
     }
 
     public ArrayList<ChessMove> solveForMate(ChessPiece.Color color, int moves,
@@ -279,6 +821,7 @@ public class GameController implements Runnable
 
     public ChessMove findBestMove()
     {
+        deepBlue.updatePosition(board, playerToMove);
         return deepBlue.findBestMove();
     }
 
@@ -289,8 +832,7 @@ public class GameController implements Runnable
      */
     public boolean isGameOver()
     {
-        deepBlue = new AI(board, playerToMove);
-        return deepBlue.isGameOver();
+        return board.checkForGameOver(playerToMove);
     }
 
     /**
@@ -301,7 +843,7 @@ public class GameController implements Runnable
      */
     public ChessPiece.Color getWinningSide()
     {
-        return deepBlue.getWinningSide();
+        return new AI(board, playerToMove).getWinningSide();
     }
 
     /**
@@ -424,4 +966,134 @@ public class GameController implements Runnable
         }
         return true;
     }
+
+    /**
+     * Saves the current game to a file: the position it started from and the
+     * moves played since, packed as in Move. The file is binary, a 40 move
+     * game takes under 250 bytes.
+     *
+     * @param filename name of file to store the game in
+     * @return whether the game was saved successfully
+     */
+    public boolean saveGameToFile(String filename)
+    {
+        BitBoard start = startPosition.bitBoard();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(filename))))
+        {
+            out.writeInt(GAME_FILE_MAGIC);
+            out.writeByte(BitBoard.colorIndex(startingPlayer));
+            out.writeByte(startPosition.getCastlingRights());
+            for (int square = 0; square < 64; square++)
+            {
+                if (start.isEmpty(square))
+                {
+                    out.writeByte(EMPTY_SQUARE);
+                }
+                else
+                {
+                    out.writeByte(start.colorAt(square) * BitBoard.NUM_TYPES + start.typeAt(square));
+                }
+            }
+            out.writeInt(moveList.size());
+            for (int i = 0; i < moveList.size(); i++)
+            {
+                out.writeInt(moveList.get(i));
+            }
+        } catch (IOException ioe)
+        {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Loads a game saved by saveGameToFile, replacing the current game. Every
+     * move is checked to be legal as it is played, so a damaged file is
+     * rejected rather than leaving the board in a strange position.
+     *
+     * @param filename name of file to read from
+     * @return whether the game was loaded successfully
+     */
+    public boolean loadGameFromFile(String filename)
+    {
+        BitBoard start = new BitBoard();
+        ChessPiece.Color firstPlayer;
+        MoveList moves = new MoveList();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(filename))))
+        {
+            if (in.readInt() != GAME_FILE_MAGIC)
+            {
+                return false;
+            }
+            firstPlayer = BitBoard.colorOf(in.readByte());
+            start.setCastlingRights(in.readByte());
+            for (int square = 0; square < 64; square++)
+            {
+                int code = in.readByte();
+                if (code != EMPTY_SQUARE && (code < 0 || code >= 2 * BitBoard.NUM_TYPES))
+                {
+                    return false;
+                }
+                if (code != EMPTY_SQUARE)
+                {
+                    start.setPiece(square, code / BitBoard.NUM_TYPES, code % BitBoard.NUM_TYPES);
+                }
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                moves.add(in.readInt());
+            }
+        } catch (IOException ioe)
+        {
+            return false;
+        }
+
+        ChessBoard replay = new ChessBoard(start);
+        if (!replay.checkPositionIsLegal())
+        {
+            return false;
+        }
+        ChessBoard first = new ChessBoard(replay);
+        ChessPiece.Color color = firstPlayer;
+        int[] legalMoves = new int[MoveGenerator.MAX_MOVES];
+        UndoRecord undo = new UndoRecord();
+        for (int i = 0; i < moves.size(); i++)
+        {
+            int move = moves.get(i);
+            if (!contains(legalMoves, replay.generateMoves(color, legalMoves), move))
+            {
+                return false;
+            }
+            replay.makeMove(move, undo);
+            color = color.opposite();
+        }
+
+        stopSearch(true);
+        board = replay;
+        playerToMove = color;
+        resetEngine();
+        startPosition = first;
+        startingPlayer = firstPlayer;
+        moveList.clear();
+        for (int i = 0; i < moves.size(); i++)
+        {
+            moveList.add(moves.get(i));
+        }
+        return true;
+    }
+
+    private static boolean contains(int[] moves, int count, int move)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            if (moves[i] == move)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,365 @@
+package chessgame;
+
+import chessgui.GameRequest;
+import chessgui.GameTask;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class runs many games at once without a GUI and without a thread for
+ * each game. Every game is a session with its own GameController, looked up
+ * by an id. Tasks for all sessions are done by a fixed pool of worker
+ * threads, so thousands of mostly idle games cost no threads at all.
+ *
+ * The tasks of one session are done one at a time in the order they were
+ * submitted, as a GameController expects, while different sessions run side
+ * by side. A session does one task and then goes to the back of the line, so
+ * a long search in one game doesn't hold up the others for more than a
+ * worker. Sessions that haven't been used for longer than the idle timeout
+ * are closed.
+ *
+ * Each session's engine searches with one thread and a transposition table of
+ * SESSION_HASH_SIZE_MB, so a full service doesn't run out of memory, and the
+ * table is freed as soon as its session is closed.
+ *
+ * @author John Polus
+ */
+public class GameSessionService
+{
+
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30 * 60 * 1000;
+    public static final int DEFAULT_MAX_SESSIONS = 10000;
+    // memory each session's engine may use for its transposition table
+    public static final int SESSION_HASH_SIZE_MB = 1;
+
+    /**
+     * This is a "struct" holding a task waiting to be done and the future its
+     * response is delivered through
+     */
+    private static class PendingTask
+    {
+
+        public final GameRequest request;
+        public final CompletableFuture<GameRequest> response;
+
+        public PendingTask(GameRequest request)
+        {
+            this.request = request;
+            response = new CompletableFuture<>();
+        }
+    }
+
+    /**
+     * One game, with the tasks waiting for it. At most one worker is doing
+     * its tasks at a time, the one that set scheduled.
+     */
+    private class Session implements Runnable
+    {
+
+        public final String id;
+        public final GameController controller;
+        public final Queue<PendingTask> pending;
+        public final AtomicBoolean scheduled;
+        public volatile long lastUsed;
+        public volatile boolean closed;
+
+        public Session(String id)
+        {
+            this.id = id;
+            controller = new GameController();
+            controller.setSearchThreads(1);
+            controller.setHashSize(SESSION_HASH_SIZE_MB);
+            pending = new ConcurrentLinkedQueue<>();
+            scheduled = new AtomicBoolean(false);
+            lastUsed = System.currentTimeMillis();
+        }
+
+        /**
+         * Has a worker do the next task, unless one is already on it
+         */
+        public void schedule()
+        {
+            if (!pending.isEmpty() && !workers.isShutdown()
+                    && scheduled.compareAndSet(false, true))
+            {
+                workers.execute(this);
+            }
+        }
+
+        /**
+         * Does the next task, then gives the worker back
+         */
+        @Override
+        public void run()
+        {
+            PendingTask task = pending.poll();
+            if (task != null)
+            {
+                try
+                {
+                    task.response.complete(controller.process(task.request));
+                } catch (RuntimeException re)
+                {
+                    task.response.completeExceptionally(re);
+                }
+                lastUsed = System.currentTimeMillis();
+            }
+            scheduled.set(false);
+            // a task may have come in after the poll, don't leave it behind
+            schedule();
+            release();
+        }
+
+        /**
+         * Frees the engine's tables once the session is closed and has no
+         * tasks left. Only done while holding scheduled, so never during a
+         * task.
+         */
+        public void release()
+        {
+            if (closed && pending.isEmpty() && scheduled.compareAndSet(false, true))
+            {
+                controller.releaseEngine();
+                scheduled.set(false);
+                schedule();
+            }
+        }
+
+        public void close()
+        {
+            closed = true;
+            release();
+        }
+
+        public boolean isIdle(long now)
+        {
+            return !scheduled.get() && pending.isEmpty()
+                    && now - lastUsed > idleTimeoutMillis;
+        }
+    }
+
+    private final Map<String, Session> sessions;
+    // sessions open or being created, a slot is taken before a session is
+    // made so concurrent callers can't open more than maxSessions
+    private final AtomicInteger sessionCount;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService evictor;
+    private final long idleTimeoutMillis;
+    private final int maxSessions;
+
+    /**
+     * Creates a service with one worker for each processor and the default
+     * limits
+     */
+    public GameSessionService()
+    {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_SESSIONS,
+                DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates a service
+     *
+     * @param threads number of worker threads shared by all sessions
+     * @param maxSessions most sessions open at once
+     * @param idleTimeoutMillis how long a session may go unused before it is
+     * closed
+     */
+    public GameSessionService(int threads, int maxSessions, long idleTimeoutMillis)
+    {
+        this.maxSessions = maxSessions;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        sessions = new ConcurrentHashMap<>();
+        sessionCount = new AtomicInteger();
+        workers = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads),
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NamedThreadFactory("Game Session Worker"));
+        evictor = Executors.newSingleThreadScheduledExecutor(
+                new NamedThreadFactory("Game Session Evictor"));
+        long period = Math.max(1L, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                evictIdleSessions();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a new game in the standard starting position
+     *
+     * @return String - id of the new session
+     * @throws IllegalStateException if maxSessions are already open or the
+     * service has been shut down
+     */
+    public String createSession()
+    {
+        if (workers.isShutdown())
+        {
+            throw new IllegalStateException("Service has been shut down");
+        }
+        int count;
+        do
+        {
+            count = sessionCount.get();
+            if (count >= maxSessions)
+            {
+                throw new IllegalStateException("Too many sessions, at most " + maxSessions);
+            }
+        } while (!sessionCount.compareAndSet(count, count + 1));
+        String id = UUID.randomUUID().toString();
+        sessions.put(id, new Session(id));
+        return id;
+    }
+
+    /**
+     * Adds a task to the end of a session's line. It is done after every
+     * task submitted to the session before it. STOP_SEARCH is the exception,
+     * it is done right away, since the search it should stop holds up the
+     * line. It stops the search the session is doing, if any.
+     *
+     * @param sessionId id returned by createSession
+     * @param task what to do
+     * @param info what the task needs, as for GameController
+     * @return CompletableFuture - completed with the response once the task is
+     * done
+     * @throws IllegalArgumentException if there is no such session, e.g.
+     * because it was closed for being idle
+     */
+    public CompletableFuture<GameRequest> submit(String sessionId, GameTask task, Object info)
+    {
+        Session session = sessions.get(sessionId);
+        if (session == null)
+        {
+            throw new IllegalArgumentException("No session " + sessionId);
+        }
+        session.lastUsed = System.currentTimeMillis();
+        if (task == GameTask.STOP_SEARCH)
+        {
+            GameRequest response = new GameRequest(task, null, false);
+            response.success = session.controller.stopSearch();
+            return CompletableFuture.completedFuture(response);
+        }
+        PendingTask pendingTask = new PendingTask(new GameRequest(task, info, false));
+        session.pending.add(pendingTask);
+        session.schedule();
+        return pendingTask.response;
+    }
+
+    /**
+     * Closes a session. Tasks already waiting for it are still done.
+     *
+     * @param sessionId id returned by createSession
+     * @return boolean - false if there was no such session
+     */
+    public boolean closeSession(String sessionId)
+    {
+        Session session = sessions.get(sessionId);
+        return session != null && remove(session);
+    }
+
+    /**
+     * Takes a session out of the map, gives back its slot and closes it,
+     * unless another thread got to it first
+     *
+     * @param session session to close
+     * @return boolean - whether this call removed it
+     */
+    private boolean remove(Session session)
+    {
+        if (!sessions.remove(session.id, session))
+        {
+            return false;
+        }
+        sessionCount.decrementAndGet();
+        session.close();
+        return true;
+    }
+
+    public boolean hasSession(String sessionId)
+    {
+        return sessions.containsKey(sessionId);
+    }
+
+    public int getSessionCount()
+    {
+        return sessions.size();
+    }
+
+    /**
+     * Closes every session that has had nothing to do for longer than the
+     * idle timeout. Called regularly by the service itself.
+     *
+     * @return int - number of sessions closed
+     */
+    public int evictIdleSessions()
+    {
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+        for (Session session : sessions.values())
+        {
+            if (session.isIdle(now) && remove(session))
+            {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Stops the service. Tasks already started are finished, the rest are
+     * dropped and every session is closed.
+     */
+    public void shutdown()
+    {
+        evictor.shutdownNow();
+        workers.shutdownNow();
+        for (Session session : sessions.values())
+        {
+            PendingTask task;
+            while ((task = session.pending.poll()) != null)
+            {
+                task.response.cancel(false);
+            }
+            remove(session);
+        }
+    }
+
+    /**
+     * Names the service's threads and makes them daemons, so a forgotten
+     * service doesn't keep the program running
+     */
+    private static class NamedThreadFactory implements ThreadFactory
+    {
+
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        public NamedThreadFactory(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, name + " " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
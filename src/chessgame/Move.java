@@ -0,0 +1,294 @@
+package chessgame;
+
+/**
+ * This class packs a move into a single int, so moves can be generated into
+ * plain int arrays and searched without creating any objects. The int holds
+ * the squares moved from and to (numbered as in BitBoard), the type of the
+ * piece moving, the type of piece captured, the type promoted to and flags for
+ * the special moves:
+ *
+ * bits 0-5 from, 6-11 to, 12-14 piece, 15-17 captured, 18-20 promotion,
+ * 21-23 flags, 24 color
+ *
+ * A move that captures or promotes to nothing has NO_PIECE there. 0 is never
+ * a real move, since from and to are never the same, so it stands for "no
+ * move".
+ *
+ * @author John Polus
+ */
+public final class Move
+{
+
+    public static final int NONE = 0;
+    public static final int NO_PIECE = 7;
+
+    // Flags for moves that need more than moving one piece
+    public static final int EN_PASSANT = 1;
+    public static final int CASTLE = 2;
+    public static final int DOUBLE_PUSH = 4;
+
+    private static final int TO_SHIFT = 6;
+    private static final int PIECE_SHIFT = 12;
+    private static final int CAPTURED_SHIFT = 15;
+    private static final int PROMOTION_SHIFT = 18;
+    private static final int FLAGS_SHIFT = 21;
+    private static final int COLOR_SHIFT = 24;
+
+    // oneLetterIdentifier of each BitBoard piece type
+    private static final String PIECE_LETTERS = "PNBRQK";
+
+    private Move()
+    {
+    }
+
+    /**
+     * Packs a move into an int
+     *
+     * @param color BitBoard color of the piece moving
+     * @param piece BitBoard type of the piece moving
+     * @param from square moved from
+     * @param to square moved to
+     * @param captured type of the piece captured, or NO_PIECE
+     * @param promotion type promoted to, or NO_PIECE
+     * @param flags EN_PASSANT, CASTLE, DOUBLE_PUSH or 0
+     * @return int - the packed move
+     */
+    public static int create(int color, int piece, int from, int to, int captured,
+            int promotion, int flags)
+    {
+        return from | (to << TO_SHIFT) | (piece << PIECE_SHIFT)
+                | (captured << CAPTURED_SHIFT) | (promotion << PROMOTION_SHIFT)
+                | (flags << FLAGS_SHIFT) | (color << COLOR_SHIFT);
+    }
+
+    public static int from(int move)
+    {
+        return move & 63;
+    }
+
+    public static int to(int move)
+    {
+        return (move >>> TO_SHIFT) & 63;
+    }
+
+    public static int piece(int move)
+    {
+        return (move >>> PIECE_SHIFT) & 7;
+    }
+
+    public static int captured(int move)
+    {
+        return (move >>> CAPTURED_SHIFT) & 7;
+    }
+
+    public static int promotion(int move)
+    {
+        return (move >>> PROMOTION_SHIFT) & 7;
+    }
+
+    public static int flags(int move)
+    {
+        return (move >>> FLAGS_SHIFT) & 7;
+    }
+
+    public static int color(int move)
+    {
+        return (move >>> COLOR_SHIFT) & 1;
+    }
+
+    public static boolean isCapture(int move)
+    {
+        return captured(move) != NO_PIECE;
+    }
+
+    public static boolean isPromotion(int move)
+    {
+        return promotion(move) != NO_PIECE;
+    }
+
+    public static boolean isEnPassant(int move)
+    {
+        return (flags(move) & EN_PASSANT) != 0;
+    }
+
+    public static boolean isCastle(int move)
+    {
+        return (flags(move) & CASTLE) != 0;
+    }
+
+    /**
+     * Captures and promotions change the material on the board, everything
+     * else is a quiet move
+     *
+     * @param move packed move
+     * @return boolean - true if the move neither captures nor promotes
+     */
+    public static boolean isQuiet(int move)
+    {
+        return !isCapture(move) && !isPromotion(move);
+    }
+
+    /**
+     * Returns the given move with its promotion changed to the given type,
+     * for when the piece a pawn becomes is only decided after it has moved
+     *
+     * @param move packed move of a pawn to the last row
+     * @param promotion BitBoard type promoted to
+     * @return int - the same move promoting to the given type
+     */
+    public static int withPromotion(int move, int promotion)
+    {
+        return (move & ~(7 << PROMOTION_SHIFT)) | (promotion << PROMOTION_SHIFT);
+    }
+
+    /**
+     * Makes a ChessMove that does the same as the packed move, for code that
+     * works with ChessMoves such as the GUI. The piece is copied from the
+     * given board, which must be the position the move is played in.
+     *
+     * @param move packed move
+     * @param board board the move would be played on
+     * @return ChessMove - the same move as a ChessMove
+     */
+    public static ChessMove toChessMove(int move, ChessBoard board)
+    {
+        int from = from(move);
+        int to = to(move);
+        ChessMove cm = new ChessMove(board.getCopyOfPieceAt(BitBoard.xOf(from), BitBoard.yOf(from)),
+                BitBoard.xOf(to), BitBoard.yOf(to));
+        cm.captures = isCapture(move);
+        cm.takesWithEP = isEnPassant(move);
+        if (isCastle(move))
+        {
+            cm.setMoveType(to > from ? ChessMove.Type.CASTLE_KS : ChessMove.Type.CASTLE_QS);
+        }
+        if (isPromotion(move))
+        {
+            cm.promotes = true;
+            cm.promotionPiece = String.valueOf(PIECE_LETTERS.charAt(promotion(move)));
+        }
+        return cm;
+    }
+
+    /**
+     * Packs a ChessMove. What the move captures is looked up on the given
+     * board, which must be the position the move is played in. A promotion
+     * with no promotionPiece named promotes to a Queen, as in ChessBoard.
+     *
+     * @param cm move to pack, cm.piece gives the square moved from
+     * @param board board the move would be played on
+     * @return int - the packed move, NONE if cm has no piece
+     */
+    public static int fromChessMove(ChessMove cm, ChessBoard board)
+    {
+        if (cm == null || cm.piece == null)
+        {
+            return NONE;
+        }
+        int from = BitBoard.square(cm.piece.getX(), cm.piece.getY());
+        int to = BitBoard.square(cm.getXDest(), cm.getYDest());
+        int piece = BitBoard.typeOf(cm.piece);
+        int flags = 0;
+        int captured = board.bitBoard().typeAt(to);
+        if (captured < 0)
+        {
+            captured = NO_PIECE;
+        }
+        if (cm.takesWithEP)
+        {
+            captured = BitBoard.PAWN;
+            flags |= EN_PASSANT;
+        }
+        int rowsMoved = Math.abs(cm.getYDest() - cm.piece.getY());
+        int colsMoved = Math.abs(cm.getXDest() - cm.piece.getX());
+        if (cm.getMoveType() != ChessMove.Type.NORMAL
+                || (piece == BitBoard.KING && colsMoved == 2))
+        {
+            flags |= CASTLE;
+        }
+        if (piece == BitBoard.PAWN && rowsMoved == 2)
+        {
+            flags |= DOUBLE_PUSH;
+        }
+        int promotion = NO_PIECE;
+        if (piece == BitBoard.PAWN && (cm.getYDest() == 0 || cm.getYDest() == ChessBoard.HEIGHT - 1))
+        {
+            promotion = typeOfLetter(cm.promotionPiece);
+        }
+        return create(BitBoard.colorIndex(cm.piece.getColor()), piece, from, to, captured,
+                promotion, flags);
+    }
+
+    /**
+     * Returns the BitBoard type of a piece that a pawn may promote to, from
+     * its oneLetterIdentifier
+     *
+     * @param letter "Q", "R", "B" or "N", may be null
+     * @return int - BitBoard type named, QUEEN if none of the above
+     */
+    static int typeOfLetter(String letter)
+    {
+        if (letter == null || letter.length() != 1)
+        {
+            return BitBoard.QUEEN;
+        }
+        int type = PIECE_LETTERS.indexOf(letter.charAt(0));
+        return type == BitBoard.KNIGHT || type == BitBoard.BISHOP || type == BitBoard.ROOK
+                ? type : BitBoard.QUEEN;
+    }
+
+    /**
+     * Writes the move in coordinate notation, the square moved from then the
+     * square moved to, with the piece promoted to in lower case: e2e4, e7e8q.
+     * Castling is written as the king's move, e1g1.
+     *
+     * @param move packed move
+     * @return String - the move in coordinate notation, "0000" for NONE
+     */
+    public static String toString(int move)
+    {
+        if (move == NONE)
+        {
+            return "0000";
+        }
+        String text = squareName(from(move)) + squareName(to(move));
+        if (isPromotion(move))
+        {
+            text += Character.toLowerCase(PIECE_LETTERS.charAt(promotion(move)));
+        }
+        return text;
+    }
+
+    /**
+     * Finds the legal move written in coordinate notation (see toString) for
+     * the given player on the given board
+     *
+     * @param text move in coordinate notation
+     * @param board board the move is played on
+     * @param color player making the move
+     * @return int - the packed move, NONE if no legal move matches
+     */
+    public static int parse(String text, ChessBoard board, ChessPiece.Color color)
+    {
+        text = text.trim().toLowerCase();
+        if (text.length() < 4 || text.length() > 5)
+        {
+            return NONE;
+        }
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = board.generateMoves(color, moves);
+        for (int i = 0; i < count; i++)
+        {
+            if (toString(moves[i]).equals(text))
+            {
+                return moves[i];
+            }
+        }
+        return NONE;
+    }
+
+    private static String squareName(int square)
+    {
+        return "" + (char) ('a' + BitBoard.xOf(square)) + (ChessBoard.HEIGHT - BitBoard.yOf(square));
+    }
+}
@@ -0,0 +1,350 @@
+package chessgame;
+
+/**
+ * This class generates legal moves straight from the masks of a BitBoard,
+ * writing them as packed ints (see Move) into an array the caller supplies.
+ * Nothing is allocated, so the search can keep one array per ply and reuse it.
+ *
+ * Instead of playing each move and testing whether the king is left in check,
+ * legality is worked out up front:
+ * - the king may only move to squares the opponent doesn't attack, looking
+ *   through the king itself so it can't step back along a checking line
+ * - in check, other pieces may only capture the checking piece or block it,
+ *   and in double check only the king may move
+ * - a piece pinned to its king may only move along the line of the pin
+ * - en passant, which takes two pieces off one row at once, is tested by
+ *   looking at the attacks on the king after the capture
+ *
+ * @author John Polus
+ */
+public final class MoveGenerator
+{
+
+    // more than the most legal moves any position can have
+    public static final int MAX_MOVES = 256;
+
+    // rows pawns promote on, indexed by color
+    private static final long[] PROMOTION_ROW =
+    {
+        0xFFL, 0xFFL << 56
+    };
+    // rows pawns reach after one step from their starting row
+    private static final long[] SKIP_ROW =
+    {
+        0xFFL << 40, 0xFFL << 16
+    };
+    // square of each king before castling, and the castling right for each
+    // side of the board, indexed by color
+    private static final int[] KING_HOME =
+    {
+        60, 4
+    };
+    private static final int[] KS_RIGHT =
+    {
+        BitBoard.CASTLE_WK, BitBoard.CASTLE_BK
+    };
+    private static final int[] QS_RIGHT =
+    {
+        BitBoard.CASTLE_WQ, BitBoard.CASTLE_BQ
+    };
+
+    private MoveGenerator()
+    {
+    }
+
+    /**
+     * Writes all legal moves for the given color into moves, starting at
+     * index 0. Pawns promote to each of Queen, Rook, Bishop and Knight.
+     *
+     * @param bits position to find moves in
+     * @param color color to move
+     * @param castlingRights castling rights, as in BitBoard
+     * @param moves array to write the moves to, at least MAX_MOVES long
+     * @return int - number of moves written
+     */
+    public static int generateMoves(BitBoard bits, int color, int castlingRights, int[] moves)
+    {
+        return generate(bits, color, castlingRights, moves, false);
+    }
+
+    /**
+     * Writes all legal captures for the given color into moves, along with
+     * promotions to a Queen, which change the material as much as captures do
+     *
+     * @param bits position to find moves in
+     * @param color color to move
+     * @param moves array to write the moves to, at least MAX_MOVES long
+     * @return int - number of moves written
+     */
+    public static int generateCaptures(BitBoard bits, int color, int[] moves)
+    {
+        return generate(bits, color, 0, moves, true);
+    }
+
+    /**
+     * Returns all pieces of the given color attacking the given square,
+     * counting only the pieces in occupied and with sliders blocked only by
+     * them
+     *
+     * @param bits board to look at
+     * @param square square being attacked
+     * @param occupied pieces to count
+     * @param color color of the attackers
+     * @return long - mask of the attacking pieces
+     */
+    public static long attackersTo(BitBoard bits, int square, long occupied, int color)
+    {
+        long queens = bits.getPieceMask(color, BitBoard.QUEEN);
+        long attackers = (AttackTables.PAWN_ATTACKS[1 - color][square]
+                & bits.getPieceMask(color, BitBoard.PAWN))
+                | (AttackTables.KNIGHT_ATTACKS[square] & bits.getPieceMask(color, BitBoard.KNIGHT))
+                | (AttackTables.KING_ATTACKS[square] & bits.getPieceMask(color, BitBoard.KING))
+                | (AttackTables.bishopAttacks(square, occupied)
+                & (bits.getPieceMask(color, BitBoard.BISHOP) | queens))
+                | (AttackTables.rookAttacks(square, occupied)
+                & (bits.getPieceMask(color, BitBoard.ROOK) | queens));
+        return attackers & occupied;
+    }
+
+    private static int generate(BitBoard bits, int color, int castlingRights, int[] moves,
+            boolean capturesOnly)
+    {
+        int enemy = 1 - color;
+        int king = bits.kingSquare(color);
+        if (king == BitBoard.NO_SQUARE)
+        {
+            return 0;
+        }
+        long own = bits.getColorMask(color);
+        long enemies = bits.getColorMask(enemy);
+        long occupied = bits.getOccupied();
+        long targets = capturesOnly ? enemies : ~own;
+        int count = 0;
+
+        // the king can't hide from a slider on the square behind it
+        long withoutKing = occupied & ~(1L << king);
+        for (long to = AttackTables.KING_ATTACKS[king] & targets; to != 0; to &= to - 1)
+        {
+            int square = Long.numberOfTrailingZeros(to);
+            if (attackersTo(bits, square, withoutKing, enemy) == 0)
+            {
+                moves[count++] = Move.create(color, BitBoard.KING, king, square,
+                        capturedType(bits, square), Move.NO_PIECE, 0);
+            }
+        }
+
+        long checkers = attackersTo(bits, king, occupied, enemy);
+        if (Long.bitCount(checkers) > 1)
+        {
+            return count;
+        }
+        long checkMask = ~0L;
+        if (checkers != 0)
+        {
+            int checker = Long.numberOfTrailingZeros(checkers);
+            checkMask = checkers | AttackTables.BETWEEN[king][checker];
+        }
+        targets &= checkMask;
+        long pinned = pinnedPieces(bits, color, king, occupied);
+
+        // pinned knights can never move
+        long knights = bits.getPieceMask(color, BitBoard.KNIGHT) & ~pinned;
+        for (long from = knights; from != 0; from &= from - 1)
+        {
+            int square = Long.numberOfTrailingZeros(from);
+            count = addMoves(bits, color, BitBoard.KNIGHT, square,
+                    AttackTables.KNIGHT_ATTACKS[square] & targets, moves, count);
+        }
+        for (int type = BitBoard.BISHOP; type <= BitBoard.QUEEN; type++)
+        {
+            for (long from = bits.getPieceMask(color, type); from != 0; from &= from - 1)
+            {
+                int square = Long.numberOfTrailingZeros(from);
+                long attacks = type == BitBoard.BISHOP
+                        ? AttackTables.bishopAttacks(square, occupied)
+                        : type == BitBoard.ROOK ? AttackTables.rookAttacks(square, occupied)
+                        : AttackTables.queenAttacks(square, occupied);
+                if ((pinned & (1L << square)) != 0)
+                {
+                    attacks &= AttackTables.LINE[king][square];
+                }
+                count = addMoves(bits, color, type, square, attacks & targets, moves, count);
+            }
+        }
+
+        count = addPawnMoves(bits, color, king, pinned, checkMask, capturesOnly, moves, count);
+
+        if (!capturesOnly && checkers == 0)
+        {
+            count = addCastling(bits, color, castlingRights, moves, count);
+        }
+        return count;
+    }
+
+    /**
+     * Finds the pieces of the given color that are the only piece between
+     * their king and an enemy Rook, Bishop or Queen
+     */
+    private static long pinnedPieces(BitBoard bits, int color, int king, long occupied)
+    {
+        int enemy = 1 - color;
+        long queens = bits.getPieceMask(enemy, BitBoard.QUEEN);
+        long snipers = (AttackTables.rookAttacks(king, 0L)
+                & (bits.getPieceMask(enemy, BitBoard.ROOK) | queens))
+                | (AttackTables.bishopAttacks(king, 0L)
+                & (bits.getPieceMask(enemy, BitBoard.BISHOP) | queens));
+        long own = bits.getColorMask(color);
+        long pinned = 0L;
+        for (; snipers != 0; snipers &= snipers - 1)
+        {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            long between = AttackTables.BETWEEN[king][sniper] & occupied;
+            if (between != 0 && (between & (between - 1)) == 0 && (between & own) != 0)
+            {
+                pinned |= between;
+            }
+        }
+        return pinned;
+    }
+
+    private static int addPawnMoves(BitBoard bits, int color, int king, long pinned,
+            long checkMask, boolean capturesOnly, int[] moves, int count)
+    {
+        int enemy = 1 - color;
+        long enemies = bits.getColorMask(enemy);
+        long empty = ~bits.getOccupied();
+        // White pawns move towards row 0, Black pawns towards row 7
+        int forward = color == BitBoard.WHITE ? -8 : 8;
+        int epSquare = bits.getEnPassantSquare();
+
+        for (long from = bits.getPieceMask(color, BitBoard.PAWN); from != 0; from &= from - 1)
+        {
+            int square = Long.numberOfTrailingZeros(from);
+            long allowed = checkMask;
+            if ((pinned & (1L << square)) != 0)
+            {
+                allowed &= AttackTables.LINE[king][square];
+            }
+
+            int push = square + forward;
+            long pushBit = 1L << push;
+            if ((pushBit & empty) != 0)
+            {
+                boolean promotes = (pushBit & PROMOTION_ROW[color]) != 0;
+                if ((pushBit & allowed) != 0 && (!capturesOnly || promotes))
+                {
+                    count = addPawnMove(color, square, push, Move.NO_PIECE, promotes,
+                            capturesOnly, moves, count);
+                }
+                int doublePush = push + forward;
+                if (!capturesOnly && (pushBit & SKIP_ROW[color]) != 0
+                        && ((1L << doublePush) & empty & allowed) != 0)
+                {
+                    moves[count++] = Move.create(color, BitBoard.PAWN, square, doublePush,
+                            Move.NO_PIECE, Move.NO_PIECE, Move.DOUBLE_PUSH);
+                }
+            }
+
+            long captures = AttackTables.PAWN_ATTACKS[color][square] & enemies & allowed;
+            for (long to = captures; to != 0; to &= to - 1)
+            {
+                int target = Long.numberOfTrailingZeros(to);
+                boolean promotes = ((1L << target) & PROMOTION_ROW[color]) != 0;
+                count = addPawnMove(color, square, target, capturedType(bits, target), promotes,
+                        capturesOnly, moves, count);
+            }
+
+            if (epSquare != BitBoard.NO_SQUARE
+                    && (AttackTables.PAWN_ATTACKS[color][square] & (1L << epSquare)) != 0
+                    && isLegalEnPassant(bits, color, king, square, epSquare))
+            {
+                moves[count++] = Move.create(color, BitBoard.PAWN, square, epSquare,
+                        BitBoard.PAWN, Move.NO_PIECE, Move.EN_PASSANT);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds a pawn move, or one move for each piece it can promote to
+     */
+    private static int addPawnMove(int color, int from, int to, int captured, boolean promotes,
+            boolean queenOnly, int[] moves, int count)
+    {
+        if (!promotes)
+        {
+            moves[count++] = Move.create(color, BitBoard.PAWN, from, to, captured,
+                    Move.NO_PIECE, 0);
+            return count;
+        }
+        int lowest = queenOnly ? BitBoard.QUEEN : BitBoard.KNIGHT;
+        for (int type = BitBoard.QUEEN; type >= lowest; type--)
+        {
+            moves[count++] = Move.create(color, BitBoard.PAWN, from, to, captured, type, 0);
+        }
+        return count;
+    }
+
+    /**
+     * En passant takes a pawn that isn't on the square moved to, so the pin
+     * and check masks don't cover it. Instead the position after the capture
+     * is checked directly for attacks on the king.
+     */
+    private static boolean isLegalEnPassant(BitBoard bits, int color, int king, int from,
+            int epSquare)
+    {
+        int captured = epSquare + (color == BitBoard.WHITE ? 8 : -8);
+        if ((bits.getPieceMask(1 - color, BitBoard.PAWN) & (1L << captured)) == 0)
+        {
+            return false;
+        }
+        long occupied = (bits.getOccupied() & ~(1L << from) & ~(1L << captured))
+                | (1L << epSquare);
+        return attackersTo(bits, king, occupied, 1 - color) == 0;
+    }
+
+    private static int addCastling(BitBoard bits, int color, int castlingRights, int[] moves,
+            int count)
+    {
+        int king = KING_HOME[color];
+        long occupied = bits.getOccupied();
+        int enemy = 1 - color;
+        // king side: the two squares to the right must be empty and safe
+        if ((castlingRights & KS_RIGHT[color]) != 0
+                && (occupied & (3L << (king + 1))) == 0
+                && attackersTo(bits, king + 1, occupied, enemy) == 0
+                && attackersTo(bits, king + 2, occupied, enemy) == 0)
+        {
+            moves[count++] = Move.create(color, BitBoard.KING, king, king + 2,
+                    Move.NO_PIECE, Move.NO_PIECE, Move.CASTLE);
+        }
+        // queen side: three squares to the left empty, the two nearest safe
+        if ((castlingRights & QS_RIGHT[color]) != 0
+                && (occupied & (7L << (king - 3))) == 0
+                && attackersTo(bits, king - 1, occupied, enemy) == 0
+                && attackersTo(bits, king - 2, occupied, enemy) == 0)
+        {
+            moves[count++] = Move.create(color, BitBoard.KING, king, king - 2,
+                    Move.NO_PIECE, Move.NO_PIECE, Move.CASTLE);
+        }
+        return count;
+    }
+
+    private static int addMoves(BitBoard bits, int color, int type, int from, long targets,
+            int[] moves, int count)
+    {
+        for (; targets != 0; targets &= targets - 1)
+        {
+            int to = Long.numberOfTrailingZeros(targets);
+            moves[count++] = Move.create(color, type, from, to, capturedType(bits, to),
+                    Move.NO_PIECE, 0);
+        }
+        return count;
+    }
+
+    private static int capturedType(BitBoard bits, int square)
+    {
+        int type = bits.typeAt(square);
+        return type < 0 ? Move.NO_PIECE : type;
+    }
+}
@@ -0,0 +1,104 @@
+package chessgame;
+
+/**
+ * This class is a list of packed moves (see Move) that grows as moves are
+ * added. Each move takes up a single int, instead of a ChessMove with its own
+ * copy of the piece moving, so a whole game fits in a few hundred bytes.
+ *
+ * @author John Polus
+ */
+public class MoveList
+{
+
+    private static final int INITIAL_CAPACITY = 128;
+
+    private int[] moves;
+    private int size;
+
+    public MoveList()
+    {
+        moves = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Adds a move to the end of the list
+     *
+     * @param move packed move
+     */
+    public void add(int move)
+    {
+        if (size == moves.length)
+        {
+            int[] bigger = new int[moves.length * 2];
+            System.arraycopy(moves, 0, bigger, 0, size);
+            moves = bigger;
+        }
+        moves[size++] = move;
+    }
+
+    public int get(int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return moves[index];
+    }
+
+    public void set(int index, int move)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        moves[index] = move;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * Returns the moves in a new array exactly as long as the list
+     *
+     * @return int[] - copy of the moves in the list
+     */
+    public int[] toArray()
+    {
+        int[] copy = new int[size];
+        System.arraycopy(moves, 0, copy, 0, size);
+        return copy;
+    }
+
+    /**
+     * Writes the moves in coordinate notation, separated by spaces
+     *
+     * @return String - the moves, e.g. "e2e4 e7e5 g1f3"
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++)
+        {
+            if (i > 0)
+            {
+                sb.append(' ');
+            }
+            sb.append(Move.toString(moves[i]));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,267 @@
+package chessgame;
+
+import java.util.Arrays;
+
+/**
+ * This class decides the order SearchEngine tries moves in. Alpha-beta cuts
+ * off a line as soon as one move is found to be good enough, so the sooner the
+ * best move is tried, the less of the tree has to be searched. Moves are tried
+ * in this order:
+ *
+ * 1. the best move from the transposition table
+ * 2. captures and promotions, most valuable victim first and, for the same
+ *    victim, least valuable attacker first (MVV-LVA)
+ * 3. killer moves, quiet moves that caused a cutoff at the same ply elsewhere
+ *    in the tree
+ * 4. other quiet moves, by how often the same piece moving to the same square
+ *    has caused cutoffs (history heuristic)
+ * 5. captures that lose material once the exchange is played out, see
+ *    StaticExchange
+ *
+ * Nothing is thrown away, so unlike trimming the game tree no good move is
+ * ever missed, it is only tried later.
+ *
+ * @author John Polus
+ */
+public class MoveOrderer
+{
+
+    private static final int HASH_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 28;
+    private static final int KILLER_SCORE = 1 << 27;
+    // below every quiet move, which all score 0 or more
+    private static final int LOSING_CAPTURE_SCORE = -(1 << 20);
+    // history scores stay below the killers, and are halved when they get here
+    private static final int HISTORY_LIMIT = 1 << 24;
+
+    private static final int KILLERS_PER_PLY = 2;
+
+    private final int[][] killers;
+    // indexed by color * NUM_TYPES + type, then destination square
+    private final int[][] history;
+
+    // how often a cutoff happened, and how often it was the first move tried
+    private long cutoffs;
+    private long firstMoveCutoffs;
+
+    public MoveOrderer()
+    {
+        killers = new int[SearchEngine.MAX_PLY + 1][KILLERS_PER_PLY];
+        history = new int[2 * BitBoard.NUM_TYPES][64];
+    }
+
+    /**
+     * Gives each move a score, higher scores should be tried first
+     *
+     * @param moves moves to score, packed as in Move
+     * @param count number of moves in the array
+     * @param scores array to put the score of moves[i] in scores[i]
+     * @param bits board the moves are played on
+     * @param hashMove move from the transposition table, Move.NONE if none
+     * @param ply plies from the root, for the killer moves
+     */
+    public void scoreMoves(int[] moves, int count, int[] scores, BitBoard bits,
+            int hashMove, int ply)
+    {
+        int[] plyKillers = killers[ply];
+        for (int i = 0; i < count; i++)
+        {
+            int move = moves[i];
+            if (move == hashMove)
+            {
+                scores[i] = HASH_MOVE_SCORE;
+            }
+            else if (!Move.isQuiet(move))
+            {
+                int victim = victimValue(move);
+                int attacker = BitBoard.VALUES[Move.piece(move)];
+                int mvvLva = victim * 16 - attacker;
+                if (Move.isPromotion(move))
+                {
+                    scores[i] = CAPTURE_SCORE + mvvLva
+                            + BitBoard.VALUES[Move.promotion(move)] * 16;
+                }
+                else if (attacker > victim && !Move.isEnPassant(move)
+                        && StaticExchange.evaluate(bits, Move.from(move), Move.to(move)) < 0)
+                {
+                    scores[i] = LOSING_CAPTURE_SCORE + mvvLva;
+                }
+                else
+                {
+                    scores[i] = CAPTURE_SCORE + mvvLva;
+                }
+            }
+            else if (move == plyKillers[0])
+            {
+                scores[i] = KILLER_SCORE + 1;
+            }
+            else if (move == plyKillers[1])
+            {
+                scores[i] = KILLER_SCORE;
+            }
+            else
+            {
+                scores[i] = history[historyIndex(move)][Move.to(move)];
+            }
+        }
+    }
+
+    /**
+     * Tells whether a score given by scoreMoves belongs to a capture that
+     * loses material
+     *
+     * @param score score from scoreMoves
+     * @return boolean - true for a losing capture
+     */
+    public static boolean isLosingCapture(int score)
+    {
+        return score < 0;
+    }
+
+    /**
+     * Swaps the highest scored move from index onwards into index, so moves
+     * are only sorted as far as the search gets before it cuts off
+     *
+     * @param moves moves being searched
+     * @param count number of moves in the array
+     * @param scores scores given by scoreMoves
+     * @param index position of the next move to search
+     * @return int - the move now at index
+     */
+    public static int pickMove(int[] moves, int count, int[] scores, int index)
+    {
+        int best = index;
+        for (int i = index + 1; i < count; i++)
+        {
+            if (scores[i] > scores[best])
+            {
+                best = i;
+            }
+        }
+        if (best != index)
+        {
+            int score = scores[best];
+            scores[best] = scores[index];
+            scores[index] = score;
+            int move = moves[best];
+            moves[best] = moves[index];
+            moves[index] = move;
+        }
+        return moves[index];
+    }
+
+    /**
+     * Records that the given move caused a beta cutoff. Quiet moves become
+     * killers for this ply and gain history.
+     *
+     * @param move move that was too good for the opponent to allow
+     * @param depth plies that were left to search, deeper cutoffs count more
+     * @param ply plies from the root
+     * @param moveNumber how many moves were tried before this one
+     */
+    public void recordCutoff(int move, int depth, int ply, int moveNumber)
+    {
+        cutoffs++;
+        if (moveNumber == 0)
+        {
+            firstMoveCutoffs++;
+        }
+        if (!Move.isQuiet(move))
+        {
+            return;
+        }
+
+        if (killers[ply][0] != move)
+        {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+
+        int[] pieceHistory = history[historyIndex(move)];
+        int to = Move.to(move);
+        pieceHistory[to] += depth * depth;
+        if (pieceHistory[to] >= HISTORY_LIMIT)
+        {
+            ageHistory();
+        }
+    }
+
+    /**
+     * Should be called at the start of each new search. Killers only make
+     * sense for the position they were found in, but history is still useful
+     * after the game moves on, so it is only made to count for less.
+     */
+    public void newSearch()
+    {
+        for (int[] plyKillers : killers)
+        {
+            plyKillers[0] = 0;
+            plyKillers[1] = 0;
+        }
+        ageHistory();
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+    }
+
+    /**
+     * Forgets the killers and history, for a new game
+     */
+    public void clear()
+    {
+        newSearch();
+        for (int[] pieceHistory : history)
+        {
+            Arrays.fill(pieceHistory, 0);
+        }
+    }
+
+    private void ageHistory()
+    {
+        for (int[] pieceHistory : history)
+        {
+            for (int sq = 0; sq < pieceHistory.length; sq++)
+            {
+                pieceHistory[sq] >>= 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the piece taken by the given move, same as its
+     * ChessPiece value
+     *
+     * @param move packed move
+     * @return int - value of the captured piece, 0 if nothing is captured
+     */
+    static int victimValue(int move)
+    {
+        // a promotion may not take anything
+        return Move.isCapture(move) ? BitBoard.VALUES[Move.captured(move)] : 0;
+    }
+
+    private static int historyIndex(int move)
+    {
+        return Move.color(move) * BitBoard.NUM_TYPES + Move.piece(move);
+    }
+
+    public long getCutoffs()
+    {
+        return cutoffs;
+    }
+
+    public long getFirstMoveCutoffs()
+    {
+        return firstMoveCutoffs;
+    }
+
+    /**
+     * Returns how often the first move tried caused the cutoff, the closer to
+     * 1 the better the ordering
+     *
+     * @return double - fraction of cutoffs made by the first move
+     */
+    public double firstMoveCutoffRate()
+    {
+        return cutoffs == 0 ? 0.0 : (double) firstMoveCutoffs / cutoffs;
+    }
+}
@@ -0,0 +1,288 @@
+package chessgame;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the nodes of a game tree in parallel arrays of primitives
+ * instead of as objects. A node is an index into the arrays, and keeps only
+ * the packed move that led to it (see Move), the Zobrist key of its position,
+ * where its children are and what is known about it, about 19 bytes in all.
+ * Positions aren't stored: they are reached again by playing the moves from
+ * the root, so a node costs a few hundred times less than a GameState with
+ * its own ChessBoard.
+ *
+ * Nodes are handed out from the end of the arrays like a stack (an arena).
+ * The children of a node are always next to each other, and a whole subtree
+ * that is no longer needed is given back at once with release. The arrays
+ * grow as needed up to a capacity set by a memory limit. Once that is reached
+ * allocateChildren returns NO_NODE instead of failing, so the search using
+ * the store can carry on with what it has.
+ *
+ * @author John Polus
+ */
+public class NodeStore
+{
+
+    public static final int NO_NODE = -1;
+
+    // what is known about a node, see getStatus
+    public static final byte UNKNOWN = 0;
+    public static final byte PROVEN = 1;
+    public static final byte DISPROVEN = 2;
+
+    // move, key, firstChild, childCount and status
+    public static final int BYTES_PER_NODE = 4 + 8 + 4 + 2 + 1;
+
+    private static final int INITIAL_NODES = 1 << 12;
+
+    private int[] moves;
+    private long[] keys;
+    private int[] firstChild;
+    private short[] childCount;
+    private byte[] status;
+
+    private final int capacity;
+    private int size;
+    private int peakSize;
+    private boolean limitReached;
+
+    /**
+     * Creates an empty store that may use up to the given amount of memory
+     *
+     * @param sizeMB most memory the arrays may take up, in megabytes
+     */
+    public NodeStore(int sizeMB)
+    {
+        long nodes = Math.max(1L, (long) sizeMB * 1024 * 1024 / BYTES_PER_NODE);
+        capacity = (int) Math.min(nodes, Integer.MAX_VALUE - 8);
+        allocate(Math.min(INITIAL_NODES, capacity));
+        clear();
+    }
+
+    /**
+     * Throws away every node, keeping the arrays for reuse
+     */
+    public void clear()
+    {
+        size = 0;
+        peakSize = 0;
+        limitReached = false;
+    }
+
+    /**
+     * Adds the root of a new tree. The store should be cleared first.
+     *
+     * @param key Zobrist key of the root position
+     * @return int - the root node, NO_NODE if the store is full
+     */
+    public int addRoot(long key)
+    {
+        int root = allocateChildren(1);
+        if (root != NO_NODE)
+        {
+            keys[root] = key;
+        }
+        return root;
+    }
+
+    /**
+     * Makes room for the given number of children of the given node. The
+     * children start out with no move, no children and UNKNOWN status.
+     *
+     * @param parent node whose children these are
+     * @param count number of children, at most Short.MAX_VALUE
+     * @return int - the first child, the rest follow it, or NO_NODE if the
+     * memory limit doesn't leave room for them
+     */
+    public int allocateChildren(int parent, int count)
+    {
+        int first = allocateChildren(count);
+        if (first != NO_NODE)
+        {
+            firstChild[parent] = first;
+            childCount[parent] = (short) count;
+        }
+        return first;
+    }
+
+    private int allocateChildren(int count)
+    {
+        if (count > capacity - size)
+        {
+            limitReached = true;
+            return NO_NODE;
+        }
+        if (size + count > moves.length)
+        {
+            long wanted = Math.max((long) moves.length * 2, (long) size + count);
+            allocate((int) Math.min(wanted, capacity));
+        }
+        int first = size;
+        for (int node = first; node < first + count; node++)
+        {
+            moves[node] = Move.NONE;
+            keys[node] = 0L;
+            firstChild[node] = NO_NODE;
+            childCount[node] = 0;
+            status[node] = UNKNOWN;
+        }
+        size += count;
+        peakSize = Math.max(peakSize, size);
+        return first;
+    }
+
+    /**
+     * Gives back every node from the given one on, which must be the first
+     * child of some node or the start of a later block. Used to drop a
+     * subtree once the search is done with it.
+     *
+     * @param firstFreed first node to give back, as returned by size before
+     * the nodes were allocated
+     */
+    public void release(int firstFreed)
+    {
+        size = Math.min(size, firstFreed);
+    }
+
+    /**
+     * Forgets the children of the given node and gives them back, along with
+     * everything allocated after them
+     *
+     * @param node node whose children are no longer needed
+     */
+    public void releaseChildren(int node)
+    {
+        if (firstChild[node] != NO_NODE)
+        {
+            release(firstChild[node]);
+            firstChild[node] = NO_NODE;
+            childCount[node] = 0;
+        }
+    }
+
+    private void allocate(int nodes)
+    {
+        if (moves == null)
+        {
+            moves = new int[nodes];
+            keys = new long[nodes];
+            firstChild = new int[nodes];
+            childCount = new short[nodes];
+            status = new byte[nodes];
+        }
+        else
+        {
+            moves = Arrays.copyOf(moves, nodes);
+            keys = Arrays.copyOf(keys, nodes);
+            firstChild = Arrays.copyOf(firstChild, nodes);
+            childCount = Arrays.copyOf(childCount, nodes);
+            status = Arrays.copyOf(status, nodes);
+        }
+    }
+
+    public int getMove(int node)
+    {
+        return moves[node];
+    }
+
+    public void setMove(int node, int move)
+    {
+        moves[node] = move;
+    }
+
+    public long getKey(int node)
+    {
+        return keys[node];
+    }
+
+    public void setKey(int node, long key)
+    {
+        keys[node] = key;
+    }
+
+    public int getFirstChild(int node)
+    {
+        return firstChild[node];
+    }
+
+    public int getChildCount(int node)
+    {
+        return childCount[node];
+    }
+
+    /**
+     * Returns what is known about the given node, UNKNOWN until the search
+     * using the store decides
+     *
+     * @param node node to look at
+     * @return byte - UNKNOWN, PROVEN or DISPROVEN
+     */
+    public byte getStatus(int node)
+    {
+        return status[node];
+    }
+
+    public void setStatus(int node, byte nodeStatus)
+    {
+        status[node] = nodeStatus;
+    }
+
+    /**
+     * Returns the number of nodes in use
+     *
+     * @return int - nodes allocated and not yet released
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the most nodes that were in use at once since the last clear
+     *
+     * @return int - highest size reached
+     */
+    public int getPeakSize()
+    {
+        return peakSize;
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Tells whether some children couldn't be allocated since the last clear,
+     * so the tree searched was smaller than asked for
+     *
+     * @return boolean - true if the memory limit was reached
+     */
+    public boolean isLimitReached()
+    {
+        return limitReached;
+    }
+
+    /**
+     * Returns how much memory the arrays take up now, which only grows
+     *
+     * @return long - size of the arrays in bytes
+     */
+    public long getBytesAllocated()
+    {
+        return (long) moves.length * BYTES_PER_NODE;
+    }
+
+    /**
+     * Returns a one line summary of the memory used
+     *
+     * @return String - peak nodes, capacity and memory allocated
+     */
+    @Override
+    public String toString()
+    {
+        return "nodes " + peakSize + " of " + capacity + ", "
+                + getBytesAllocated() / 1024 + " KB allocated"
+                + (limitReached ? ", memory limit reached" : "");
+    }
+}
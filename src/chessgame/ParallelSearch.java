@@ -0,0 +1,203 @@
+package chessgame;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class searches a position with several SearchEngines at once, each on
+ * its own thread, all sharing one TranspositionTable (known as Lazy SMP). The
+ * engines don't divide the work between them; they search the same tree, and
+ * what one finds is picked up by the others from the table, so they spend
+ * less time on positions already searched. Half of the helpers start one ply
+ * deeper than the main engine, so they get ahead of it and fill the table
+ * with results it will need next.
+ *
+ * The main engine runs on the calling thread and decides the result. When it
+ * finishes, the helpers are stopped. The node budget of the SearchLimits is
+ * for all the engines together, not for each.
+ *
+ * @author John Polus
+ */
+public class ParallelSearch
+{
+
+    // idle helper threads end after this long, so a forgotten search doesn't
+    // keep threads around
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final TranspositionTable transTable;
+    private final SearchEngine[] engines;
+    // nodes searched by all engines, for the node budget
+    private final AtomicLong nodeCount;
+    private final ThreadPoolExecutor executor;
+    private SearchListener listener;
+
+    /**
+     * Creates a search that uses the given number of threads, including the
+     * one calling search
+     *
+     * @param rater used to score positions, shared by all threads
+     * @param transTable table shared by all threads
+     * @param threads number of engines to run at once, at least 1
+     */
+    public ParallelSearch(BoardRater rater, TranspositionTable transTable, int threads)
+    {
+        this.transTable = transTable;
+        engines = new SearchEngine[Math.max(1, threads)];
+        nodeCount = new AtomicLong();
+        for (int i = 0; i < engines.length; i++)
+        {
+            engines[i] = new SearchEngine(rater, transTable);
+            engines[i].setSharedNodeCount(nodeCount);
+        }
+
+        if (engines.length > 1)
+        {
+            executor = new ThreadPoolExecutor(engines.length - 1, engines.length - 1,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    Thread thread = new Thread(r, "Search Helper");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        else
+        {
+            executor = null;
+        }
+    }
+
+    /**
+     * Searches the given position with all threads until the limits are
+     * reached. The board is copied by each engine, so the caller's board is
+     * left alone.
+     *
+     * @param position board to search from
+     * @param playerToMove player whose move it is
+     * @param limits depth, time and node budget of the search
+     * @return SearchResult - result of the main engine, with the nodes of all
+     * engines counted
+     * @throws IllegalStateException if a helper thread failed
+     */
+    public SearchResult search(final ChessBoard position, final ChessPiece.Color playerToMove,
+            final SearchLimits limits)
+    {
+        transTable.newSearch();
+        nodeCount.set(0);
+        ArrayList<Future<SearchResult>> helpers = new ArrayList<>();
+        for (int i = 1; i < engines.length; i++)
+        {
+            final SearchEngine helper = engines[i];
+            final int firstDepth = 1 + i % 2;
+            helper.clearStop();
+            helpers.add(executor.submit(new Callable<SearchResult>()
+            {
+                @Override
+                public SearchResult call()
+                {
+                    return helper.iterate(position, playerToMove, limits, firstDepth);
+                }
+            }));
+        }
+
+        engines[0].clearStop();
+        SearchResult result = engines[0].iterate(position, playerToMove, limits, 1);
+
+        for (int i = 1; i < engines.length; i++)
+        {
+            engines[i].stop();
+        }
+        for (int i = 0; i < helpers.size(); i++)
+        {
+            try
+            {
+                SearchResult helperResult = helpers.get(i).get();
+                result.nodes += helperResult.nodes;
+                result.stats.add(helperResult.stats);
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e)
+            {
+                // a helper searches the same tree as the main engine, so
+                // whatever broke it is a bug the caller should see
+                throw new IllegalStateException("Search helper failed", e.getCause());
+            }
+        }
+        if (listener != null)
+        {
+            listener.searchFinished(result);
+        }
+        return result;
+    }
+
+    /**
+     * Sets who to tell about the progress of searches, null for nobody. Only
+     * the depths finished by the main engine are passed on, the final result
+     * has the counts of all engines.
+     *
+     * @param listener told about each depth finished and the final result
+     */
+    public void setSearchListener(SearchListener listener)
+    {
+        this.listener = listener;
+        engines[0].setSearchListener(listener);
+    }
+
+    /**
+     * Stops a running search, the result of the last depth the main engine
+     * finished is returned. May be called from any thread.
+     */
+    public void stop()
+    {
+        for (SearchEngine engine : engines)
+        {
+            engine.stop();
+        }
+    }
+
+    /**
+     * Forgets the move ordering history of every engine, for a new game
+     */
+    public void clearHistory()
+    {
+        for (SearchEngine engine : engines)
+        {
+            engine.getMoveOrderer().clear();
+        }
+    }
+
+    /**
+     * Returns the number of threads used, including the calling thread
+     *
+     * @return int - number of engines searching at once
+     */
+    public int getThreads()
+    {
+        return engines.length;
+    }
+
+    /**
+     * Ends the helper threads. The search can't be used after this.
+     */
+    public void shutdown()
+    {
+        if (executor != null)
+        {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package chessgame;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 
 /**
  * This class represents the Pawn chess piece. The Pawn is the weakest and most
@@ -14,6 +16,21 @@ import java.util.HashSet;
 public class Pawn extends ChessPiece
 {
 
+    // the sets are built once and shared, so getMoveSet doesn't allocate, and
+    // can't be changed, since every pawn's moves depend on them
+    private static final Set<Vector> WHITE_MOVES
+            = Collections.unmodifiableSet(generateMoveList(-1, false));
+    private static final Set<Vector> WHITE_FIRST_MOVES
+            = Collections.unmodifiableSet(generateMoveList(-1, true));
+    private static final Set<Vector> BLACK_MOVES
+            = Collections.unmodifiableSet(generateMoveList(1, false));
+    private static final Set<Vector> BLACK_FIRST_MOVES
+            = Collections.unmodifiableSet(generateMoveList(1, true));
+    private static final Set<Vector> WHITE_CAPTURES
+            = Collections.unmodifiableSet(generateCaptureList(-1));
+    private static final Set<Vector> BLACK_CAPTURES
+            = Collections.unmodifiableSet(generateCaptureList(1));
+
     /*
     This is the default constructor for a Pawn
      */
@@ -60,47 +77,42 @@ public class Pawn extends ChessPiece
         yCoord = cp.yCoord;
     }
 
-    @Override
-    public final HashSet<Vector> getMoveSet()
+    private static HashSet<Vector> generateMoveList(int yDir, boolean firstMove)
     {
         HashSet<Vector> moves = new HashSet<>();
-
-        // White pawns move in -y direction
-        if (color == ChessPiece.Color.WHITE)
+        moves.add(new Vector(0, yDir));
+        if (firstMove)
         {
-            moves.add(new Vector(0, -1));
-            if (yCoord == 6)
-            {
-                moves.add(new Vector(0, -2));
-            }
-        }
-        else // Black pawns move in +y direction
-        {
-            moves.add(new Vector(0, 1));
-            if (yCoord == 1)
-            {
-                moves.add(new Vector(0, 2));
-            }
+            moves.add(new Vector(0, 2 * yDir));
         }
         return moves;
     }
-    
-    public final HashSet<Vector> getCaptureMoveSet()
+
+    private static HashSet<Vector> generateCaptureList(int yDir)
     {
         HashSet<Vector> moves = new HashSet<>();
+        moves.add(new Vector(-1, yDir));
+        moves.add(new Vector(1, yDir));
+        return moves;
+    }
 
+    @Override
+    public final Set<Vector> getMoveSet()
+    {
         // White pawns move in -y direction
         if (color == ChessPiece.Color.WHITE)
         {
-            moves.add(new Vector(-1, -1));
-            moves.add(new Vector(1, -1));
+            return yCoord == 6 ? WHITE_FIRST_MOVES : WHITE_MOVES;
         }
         else // Black pawns move in +y direction
         {
-            moves.add(new Vector(1, 1));
-            moves.add(new Vector(-1, 1));
+            return yCoord == 1 ? BLACK_FIRST_MOVES : BLACK_MOVES;
         }
-        return moves;
+    }
+
+    public final Set<Vector> getCaptureMoveSet()
+    {
+        return color == ChessPiece.Color.WHITE ? WHITE_CAPTURES : BLACK_CAPTURES;
     }
 
     /**
@@ -0,0 +1,111 @@
+package chessgame;
+
+/**
+ * This class holds a bonus or penalty, in hundredths of a pawn, for each type
+ * of piece on each square: knights are better in the center, pawns are better
+ * the further they have advanced, the king is safer behind its pawns, etc.
+ * BitBoard keeps the total for each color up to date as pieces are placed and
+ * removed, so the search can use it without looking at every piece.
+ *
+ * The tables are written from White's point of view with the eighth row
+ * first, so they read like a board with White at the bottom. Black uses the
+ * same tables flipped top to bottom.
+ *
+ * @author John Polus
+ */
+public class PieceSquareTables
+{
+
+    private static final int[] PAWN =
+    {
+        0, 0, 0, 0, 0, 0, 0, 0,
+        50, 50, 50, 50, 50, 50, 50, 50,
+        10, 10, 20, 30, 30, 20, 10, 10,
+        5, 5, 10, 25, 25, 10, 5, 5,
+        0, 0, 0, 20, 20, 0, 0, 0,
+        5, -5, -10, 0, 0, -10, -5, 5,
+        5, 10, 10, -20, -20, 10, 10, 5,
+        0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    private static final int[] KNIGHT =
+    {
+        -50, -40, -30, -30, -30, -30, -40, -50,
+        -40, -20, 0, 0, 0, 0, -20, -40,
+        -30, 0, 10, 15, 15, 10, 0, -30,
+        -30, 5, 15, 20, 20, 15, 5, -30,
+        -30, 0, 15, 20, 20, 15, 0, -30,
+        -30, 5, 10, 15, 15, 10, 5, -30,
+        -40, -20, 0, 5, 5, 0, -20, -40,
+        -50, -40, -30, -30, -30, -30, -40, -50
+    };
+
+    private static final int[] BISHOP =
+    {
+        -20, -10, -10, -10, -10, -10, -10, -20,
+        -10, 0, 0, 0, 0, 0, 0, -10,
+        -10, 0, 5, 10, 10, 5, 0, -10,
+        -10, 5, 5, 10, 10, 5, 5, -10,
+        -10, 0, 10, 10, 10, 10, 0, -10,
+        -10, 10, 10, 10, 10, 10, 10, -10,
+        -10, 5, 0, 0, 0, 0, 5, -10,
+        -20, -10, -10, -10, -10, -10, -10, -20
+    };
+
+    private static final int[] ROOK =
+    {
+        0, 0, 0, 0, 0, 0, 0, 0,
+        5, 10, 10, 10, 10, 10, 10, 5,
+        -5, 0, 0, 0, 0, 0, 0, -5,
+        -5, 0, 0, 0, 0, 0, 0, -5,
+        -5, 0, 0, 0, 0, 0, 0, -5,
+        -5, 0, 0, 0, 0, 0, 0, -5,
+        -5, 0, 0, 0, 0, 0, 0, -5,
+        0, 0, 0, 5, 5, 0, 0, 0
+    };
+
+    private static final int[] QUEEN =
+    {
+        -20, -10, -10, -5, -5, -10, -10, -20,
+        -10, 0, 0, 0, 0, 0, 0, -10,
+        -10, 0, 5, 5, 5, 5, 0, -10,
+        -5, 0, 5, 5, 5, 5, 0, -5,
+        0, 0, 5, 5, 5, 5, 0, -5,
+        -10, 5, 5, 5, 5, 5, 0, -10,
+        -10, 0, 5, 0, 0, 0, 0, -10,
+        -20, -10, -10, -5, -5, -10, -10, -20
+    };
+
+    private static final int[] KING =
+    {
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -20, -30, -30, -40, -40, -30, -30, -20,
+        -10, -20, -20, -20, -20, -20, -20, -10,
+        20, 20, 0, 0, 0, 0, 20, 20,
+        20, 30, 10, 0, 0, 10, 30, 20
+    };
+
+    // indexed by BitBoard piece type
+    private static final int[][] TABLES =
+    {
+        PAWN, KNIGHT, BISHOP, ROOK, QUEEN, KING
+    };
+
+    /**
+     * Returns the bonus for a piece of the given color and type on the given
+     * square
+     *
+     * @param color BitBoard.WHITE or BitBoard.BLACK
+     * @param type one of BitBoard.PAWN through BitBoard.KING
+     * @param square square the piece is on
+     * @return int - bonus in hundredths of a pawn, negative for a penalty
+     */
+    public static int value(int color, int type, int square)
+    {
+        // square 0 is a8, so flipping the rows gives Black's view of the board
+        return TABLES[type][color == BitBoard.WHITE ? square : square ^ 56];
+    }
+}
@@ -0,0 +1,294 @@
+package chessgame;
+
+/**
+ * This class solves mate problems with a depth-first proof-number search
+ * (df-pn). The attacker's positions are OR nodes, proven when any move mates,
+ * and the defender's are AND nodes, proven when every reply loses. Each
+ * position has a proof number, the fewest positions still to be proven to
+ * prove it, and a disproof number, the fewest still to be disproven to
+ * disprove it. The search always goes on with the most-proving move: the
+ * child with the smallest proof number at an OR node, the smallest disproof
+ * number at an AND node. It stays below a node until its numbers pass
+ * thresholds set from its siblings, then goes back up to look for a better
+ * line. Lines where the defender has few replies are followed deep while wide
+ * ones are left alone, so long forced mates are found without searching
+ * every line to full depth.
+ *
+ * Only the numbers of each position are kept, in a ProofTable of fixed size,
+ * and the board is changed with makeMove and unmakeMove, so memory doesn't
+ * grow with the search. The number of plies left is mixed into the key, which
+ * keeps the same position at different depths apart and means the search
+ * can't go round in circles.
+ *
+ * @author John Polus
+ */
+public class ProofNumberSearch
+{
+
+    public static final int INFINITY = ProofTable.INFINITY;
+    public static final long DEFAULT_NODE_LIMIT = 20000000;
+
+    // mixed into the key of a position for each ply left
+    private static final long DEPTH_SALT = 0x9E3779B97F4A7C15L;
+
+    private final ProofTable table;
+    private long nodeLimit = DEFAULT_NODE_LIMIT;
+
+    private ChessBoard board;
+    private ChessPiece.Color attacker;
+    private long nodes;
+    private boolean aborted;
+
+    // moves, keys and numbers of the children at each ply
+    private int[][] moveLists;
+    private long[][] childKeys;
+    private int[][] childProof;
+    private int[][] childDisproof;
+    private UndoRecord[] undoStack;
+
+    /**
+     * Creates a search that stores the numbers it finds in the given table
+     *
+     * @param table table of proof and disproof numbers
+     */
+    public ProofNumberSearch(ProofTable table)
+    {
+        this.table = table;
+    }
+
+    /**
+     * Finds out whether the attacker, who must be the one to move, can force
+     * mate in the given number of moves. The board is copied, so the caller's
+     * board is left alone.
+     *
+     * @param position board to solve
+     * @param attacker side trying to force mate
+     * @param moves number of moves by attacker to mate in
+     * @return MoveList - the mating line as packed moves, starting with the
+     * attacker's first move, empty if no mate was found
+     */
+    public MoveList solve(ChessBoard position, ChessPiece.Color attacker, int moves)
+    {
+        MoveList line = new MoveList();
+        nodes = 0;
+        aborted = false;
+        if (moves < 1)
+        {
+            return line;
+        }
+        board = new ChessBoard(position);
+        this.attacker = attacker;
+        int plies = 2 * moves - 1;
+        moveLists = new int[plies + 1][MoveGenerator.MAX_MOVES];
+        childKeys = new long[plies + 1][MoveGenerator.MAX_MOVES];
+        childProof = new int[plies + 1][MoveGenerator.MAX_MOVES];
+        childDisproof = new int[plies + 1][MoveGenerator.MAX_MOVES];
+        undoStack = new UndoRecord[plies + 1];
+        for (int i = 0; i < undoStack.length; i++)
+        {
+            undoStack[i] = new UndoRecord();
+        }
+
+        long entry = mid(nodeKey(board.getZobristKey(attacker), plies),
+                INFINITY, INFINITY, plies, 0);
+        if (ProofTable.proofOf(entry) == 0)
+        {
+            tracePath(line, plies);
+        }
+        board = null;
+        return line;
+    }
+
+    /**
+     * Searches the current position until its proof number reaches
+     * proofLimit or its disproof number reaches disproofLimit, and stores the
+     * numbers it ends with
+     *
+     * @param key key of the position, see nodeKey
+     * @param proofLimit threshold for the proof number
+     * @param disproofLimit threshold for the disproof number
+     * @param pliesLeft plies the attacker has left
+     * @param ply plies from the root, even when the attacker is to move
+     * @return long - the numbers found, to be read with ProofTable.proofOf
+     * and disproofOf
+     */
+    private long mid(long key, int proofLimit, int disproofLimit, int pliesLeft, int ply)
+    {
+        nodes++;
+        boolean attacking = (ply & 1) == 0;
+        ChessPiece.Color toMove = attacking ? attacker : attacker.opposite();
+        int[] moves = moveLists[ply];
+        int count = board.generateMoves(toMove, moves);
+        if (count == 0 || (!attacking && pliesLeft == 0))
+        {
+            // only a checkmated defender counts, stalemate or running out of
+            // moves is a failure for the attacker
+            boolean mated = count == 0 && !attacking && board.checkForCheck(toMove);
+            long entry = mated ? pack(0, INFINITY) : pack(INFINITY, 0);
+            table.store(key, ProofTable.proofOf(entry), ProofTable.disproofOf(entry), 1);
+            return entry;
+        }
+
+        long[] keys = childKeys[ply];
+        int[] proof = childProof[ply];
+        int[] disproof = childDisproof[ply];
+        UndoRecord undo = undoStack[ply];
+        for (int i = 0; i < count; i++)
+        {
+            board.makeMove(moves[i], undo);
+            keys[i] = nodeKey(board.getZobristKey(toMove.opposite()), pliesLeft - 1);
+            board.unmakeMove(moves[i], undo);
+            long entry = table.probe(keys[i]);
+            proof[i] = entry == 0 ? 1 : ProofTable.proofOf(entry);
+            disproof[i] = entry == 0 ? 1 : ProofTable.disproofOf(entry);
+        }
+
+        long startNodes = nodes;
+        while (true)
+        {
+            // an OR node needs one child proven and all disproven, an AND
+            // node the other way round, so swap the numbers at AND nodes
+            int[] minimized = attacking ? proof : disproof;
+            int[] summed = attacking ? disproof : proof;
+            int best = 0;
+            int secondBest = INFINITY;
+            int sum = 0;
+            for (int i = 0; i < count; i++)
+            {
+                if (minimized[i] < minimized[best])
+                {
+                    secondBest = minimized[best];
+                    best = i;
+                }
+                else if (i != best && minimized[i] < secondBest)
+                {
+                    secondBest = minimized[i];
+                }
+                sum = Math.min(INFINITY, sum + summed[i]);
+            }
+            int proofNumber = attacking ? minimized[best] : sum;
+            int disproofNumber = attacking ? sum : minimized[best];
+
+            if (proofNumber >= proofLimit || disproofNumber >= disproofLimit
+                    || aborted || nodes >= nodeLimit)
+            {
+                aborted |= nodes >= nodeLimit;
+                int work = (int) Math.min(nodes - startNodes + 1, Integer.MAX_VALUE);
+                table.store(key, proofNumber, disproofNumber, work);
+                return pack(proofNumber, disproofNumber);
+            }
+
+            // the best child may go on until it is no longer better than the
+            // second best, or until this node would pass its own threshold
+            int minLimit = attacking ? proofLimit : disproofLimit;
+            int sumLimit = attacking ? disproofLimit : proofLimit;
+            int childMinLimit = Math.min(minLimit, secondBest + 1);
+            int childSumLimit = Math.min(INFINITY, sumLimit - sum + summed[best]);
+
+            board.makeMove(moves[best], undo);
+            long entry = attacking
+                    ? mid(keys[best], childMinLimit, childSumLimit, pliesLeft - 1, ply + 1)
+                    : mid(keys[best], childSumLimit, childMinLimit, pliesLeft - 1, ply + 1);
+            board.unmakeMove(moves[best], undo);
+            proof[best] = ProofTable.proofOf(entry);
+            disproof[best] = ProofTable.disproofOf(entry);
+        }
+    }
+
+    /**
+     * Plays out the proven line from the root, taking a proven move for the
+     * attacker and the first reply for the defender. Positions pushed out of
+     * the table are solved again.
+     *
+     * @param line list the moves are added to
+     * @param plies plies the attacker has at the root
+     */
+    private void tracePath(MoveList line, int plies)
+    {
+        int pliesLeft = plies;
+        for (int ply = 0; pliesLeft > 0 || (ply & 1) == 1; ply++)
+        {
+            ChessPiece.Color toMove = (ply & 1) == 0 ? attacker : attacker.opposite();
+            int[] moves = moveLists[ply];
+            int count = board.generateMoves(toMove, moves);
+            if (count == 0 || pliesLeft == 0)
+            {
+                return;
+            }
+            UndoRecord undo = undoStack[ply];
+            int chosen = Move.NONE;
+            for (int pass = 0; pass < 2 && chosen == Move.NONE; pass++)
+            {
+                for (int i = 0; i < count && chosen == Move.NONE; i++)
+                {
+                    board.makeMove(moves[i], undo);
+                    long key = nodeKey(board.getZobristKey(toMove.opposite()), pliesLeft - 1);
+                    long entry = table.probe(key);
+                    if (entry == 0 && pass == 1)
+                    {
+                        entry = mid(key, INFINITY, INFINITY, pliesLeft - 1, ply + 1);
+                    }
+                    board.unmakeMove(moves[i], undo);
+                    if (entry != 0 && ProofTable.proofOf(entry) == 0)
+                    {
+                        chosen = moves[i];
+                    }
+                }
+            }
+            if (chosen == Move.NONE)
+            {
+                return;
+            }
+            board.makeMove(chosen, undo);
+            line.add(chosen);
+            pliesLeft--;
+        }
+    }
+
+    private static long nodeKey(long positionKey, int pliesLeft)
+    {
+        return positionKey ^ (pliesLeft * DEPTH_SALT);
+    }
+
+    private static long pack(int proof, int disproof)
+    {
+        return ((long) proof << 32) | (disproof & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Sets the most positions one solve may visit. A solve that runs out
+     * returns no mate and isComplete tells so.
+     *
+     * @param limit most positions to visit
+     */
+    public void setNodeLimit(long limit)
+    {
+        nodeLimit = limit;
+    }
+
+    /**
+     * Returns the number of positions visited by the last solve
+     *
+     * @return long - node count
+     */
+    public long getNodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * Tells whether the last solve finished within its node limit, so an
+     * empty result means there is no mate
+     *
+     * @return boolean - true if the root was proven or disproven
+     */
+    public boolean isComplete()
+    {
+        return !aborted;
+    }
+
+    public ProofTable getTable()
+    {
+        return table;
+    }
+}
@@ -0,0 +1,117 @@
+package chessgame;
+
+import java.util.Arrays;
+
+/**
+ * This class remembers the proof and disproof numbers found by a
+ * ProofNumberSearch, looked up by Zobrist key. The proof number of a position
+ * is how many more positions at least have to be shown lost for the defender
+ * to prove the mate, the disproof number how many have to be shown safe to
+ * disprove it. 0 means proven (or disproven), INFINITY means it can't be.
+ *
+ * Like the TranspositionTable it has a power-of-two number of entries and the
+ * two numbers are packed into a single long. Each slot keeps the position
+ * that took the most work to find out about, so cheap results near the
+ * leaves don't push out ones that would be expensive to get again.
+ *
+ * @author John Polus
+ */
+public class ProofTable
+{
+
+    public static final int INFINITY = 100000000;
+
+    public static final int DEFAULT_SIZE_MB = 64;
+
+    // key, data and work for each entry
+    private static final int BYTES_PER_ENTRY = 8 + 8 + 4;
+    private static final int MAX_ENTRIES = 1 << 28;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int[] work;
+    private final long indexMask;
+
+    /**
+     * Creates a table that takes up at most the given number of megabytes,
+     * rounded down to a power of two number of entries
+     *
+     * @param sizeMB memory to use, in megabytes
+     */
+    public ProofTable(int sizeMB)
+    {
+        long entries = Math.max(1L, (long) sizeMB * 1024 * 1024 / BYTES_PER_ENTRY);
+        entries = Math.min(Long.highestOneBit(entries), MAX_ENTRIES);
+        keys = new long[(int) entries];
+        data = new long[(int) entries];
+        work = new int[(int) entries];
+        indexMask = entries - 1;
+    }
+
+    /**
+     * Looks up the given position
+     *
+     * @param key key of the position
+     * @return long - the stored numbers, to be read with proofOf and
+     * disproofOf, or 0 if the position isn't in the table
+     */
+    public long probe(long key)
+    {
+        int index = (int) (key & indexMask);
+        if (keys[index] == key)
+        {
+            return data[index];
+        }
+        return 0L;
+    }
+
+    /**
+     * Stores the proof and disproof numbers of the given position, unless its
+     * slot holds another position that took more work
+     *
+     * @param key key of the position
+     * @param proof proof number, 0 to INFINITY
+     * @param disproof disproof number, 0 to INFINITY
+     * @param nodes number of positions searched to get these numbers
+     */
+    public void store(long key, int proof, int disproof, int nodes)
+    {
+        int index = (int) (key & indexMask);
+        if (keys[index] == key || data[index] == 0 || nodes >= work[index])
+        {
+            keys[index] = key;
+            data[index] = ((long) proof << 32) | (disproof & 0xFFFFFFFFL);
+            work[index] = nodes;
+        }
+    }
+
+    /**
+     * Empties the table
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+        Arrays.fill(work, 0);
+    }
+
+    public static int proofOf(long entry)
+    {
+        return (int) (entry >>> 32);
+    }
+
+    public static int disproofOf(long entry)
+    {
+        return (int) entry;
+    }
+
+    /**
+     * Returns how many positions the table can hold
+     *
+     * @return int - number of entries
+     */
+    public int capacity()
+    {
+        return data.length;
+    }
+}
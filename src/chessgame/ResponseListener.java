@@ -0,0 +1,25 @@
+package chessgame;
+
+import chessgui.GameRequest;
+
+/**
+ * This interface is for whatever sends tasks to a GameController and wants
+ * to hear back. The controller calls it once for each task as soon as the
+ * task is done, so nothing has to poll for responses.
+ *
+ * @author John Polus
+ */
+public interface ResponseListener
+{
+
+    /**
+     * Called when a task is done, on the controller's thread or, for
+     * FIND_BEST_MOVE, on its search thread. GUI code should
+     * hand the response over to its own thread, e.g. with
+     * SwingUtilities.invokeLater, and the method should return quickly since
+     * the controller waits for it before starting the next task.
+     *
+     * @param response result of the task, with the task it answers
+     */
+    void responseReady(GameRequest response);
+}
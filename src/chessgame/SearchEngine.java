@@ -0,0 +1,572 @@
+package chessgame;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class finds the best move by a depth-first alpha-beta search. Instead of
+ * building a game tree, it plays moves on a single board with makeMove and
+ * takes them back with unmakeMove, so memory use doesn't grow with the size of
+ * the tree. Lines that cannot change the result are cut off as soon as that is
+ * known. Positions already searched are looked up in a TranspositionTable.
+ *
+ * The search deepens one ply at a time, trying the best move of the previous
+ * depth first, until the SearchLimits are used up. A depth that is cut short
+ * is thrown away and the result of the last complete depth is returned.
+ * Moves are generated by MoveGenerator as packed ints (see Move) into an
+ * array kept for each ply, so searching a node allocates nothing. Within a
+ * depth, moves are tried in the order given by a MoveOrderer. When the depth
+ * runs out, captures are still followed until the position is quiet
+ * (quiescence search), so the evaluation isn't taken in the middle of a trade.
+ *
+ * Scores are from the point of view of the player to move (negamax), in
+ * hundredths of a pawn. Being checkmated scores -MATE_SCORE plus the number of
+ * plies to the mate, so quicker mates are preferred.
+ *
+ * @author John Polus
+ */
+public class SearchEngine
+{
+
+    public static final int MAX_PLY = 64;
+    public static final int MATE_SCORE = 30000;
+    public static final int INFINITY = 32000;
+
+    // scores beyond this are mates, and depend on the ply they were found at
+    private static final int MATE_BOUND = MATE_SCORE - MAX_PLY;
+
+    // how many nodes to visit between looking at the clock
+    private static final int CHECK_INTERVAL = 256;
+
+    // captures that can't bring the score back up to alpha even with this
+    // much to spare are skipped in the quiescence search (delta pruning)
+    private static final int DELTA_MARGIN = 200;
+    private static final int PAWN_SCORE = 100;
+
+    private final BoardRater rater;
+    private final TranspositionTable transTable;
+    private final MoveOrderer orderer;
+
+    private ChessBoard board;
+    private long nodes;
+    // nodes of every engine searching together, see setSharedNodeCount, and
+    // how many of this engine's nodes have been added to it
+    private AtomicLong sharedNodes;
+    private long nodesShared;
+    private long qnodes;
+    private long ttProbes;
+    private long ttHits;
+    private SearchStats stats;
+    private SearchListener listener;
+
+    private SearchLimits limits;
+    private long startTime;
+    private int rootDepth;
+    // set by checkLimits, or by another thread through stop
+    private volatile boolean stopped;
+    // best move of the last finished depth, tried first at the next one
+    private int rootBestMove;
+
+    // principal variation of each ply, pvTable[ply] holds the line from there
+    private final int[][] pvTable;
+    private final int[] pvLength;
+    private final UndoRecord[] undoStack;
+    // moves and their ordering scores for each ply
+    private final int[][] moveLists;
+    private final int[][] moveScores;
+
+    /**
+     * Creates an engine that rates positions with the given rater and stores
+     * results in the given table
+     *
+     * @param rater used to score positions at the end of the search
+     * @param transTable table of positions already searched
+     */
+    public SearchEngine(BoardRater rater, TranspositionTable transTable)
+    {
+        this.rater = rater;
+        this.transTable = transTable;
+        orderer = new MoveOrderer();
+        moveLists = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+        moveScores = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+        pvTable = new int[MAX_PLY + 1][MAX_PLY + 1];
+        pvLength = new int[MAX_PLY + 1];
+        undoStack = new UndoRecord[MAX_PLY + 1];
+        for (int i = 0; i < undoStack.length; i++)
+        {
+            undoStack[i] = new UndoRecord();
+        }
+    }
+
+    /**
+     * Searches the given position to the given depth. The board is copied, so
+     * the caller's board is left alone.
+     *
+     * @param position board to search from
+     * @param playerToMove player whose move it is
+     * @param depth number of plies to search
+     * @return SearchResult - best move, score, expected line and node count
+     */
+    public SearchResult search(ChessBoard position, ChessPiece.Color playerToMove, int depth)
+    {
+        return search(position, playerToMove, SearchLimits.depth(depth));
+    }
+
+    /**
+     * Searches the given position one ply deeper at a time until the limits
+     * are reached. The first ply is always finished, so there is a move to
+     * return even if the budget is tiny. The board is copied, so the caller's
+     * board is left alone.
+     *
+     * @param position board to search from
+     * @param playerToMove player whose move it is
+     * @param limits depth, time and node budget of the search
+     * @return SearchResult - result of the deepest depth that was finished
+     */
+    public SearchResult search(ChessBoard position, ChessPiece.Color playerToMove,
+            SearchLimits limits)
+    {
+        stopped = false;
+        transTable.newSearch();
+        SearchResult result = iterate(position, playerToMove, limits, 1);
+        if (listener != null)
+        {
+            listener.searchFinished(result);
+        }
+        return result;
+    }
+
+    /**
+     * Deepens the search from firstDepth until the limits are reached or stop
+     * is called. Unlike search, this doesn't reset the stop flag or start a
+     * new transposition table generation, so that several engines can search
+     * the same position together, see ParallelSearch. The listener is told
+     * about each depth finished, but not that the search is over.
+     *
+     * @param position board to search from
+     * @param playerToMove player whose move it is
+     * @param limits depth, time and node budget of the search
+     * @param firstDepth depth of the first search
+     * @return SearchResult - result of the deepest depth that was finished
+     */
+    SearchResult iterate(ChessBoard position, ChessPiece.Color playerToMove,
+            SearchLimits limits, int firstDepth)
+    {
+        startTime = System.currentTimeMillis();
+        board = new ChessBoard(position);
+        nodes = 0;
+        nodesShared = 0;
+        qnodes = 0;
+        ttProbes = 0;
+        ttHits = 0;
+        stats = new SearchStats();
+        rootBestMove = Move.NONE;
+        this.limits = limits;
+        orderer.newSearch();
+
+        SearchResult result = new SearchResult();
+        result.stats = stats;
+        for (rootDepth = firstDepth; rootDepth <= limits.maxDepth; rootDepth++)
+        {
+            int score = negamax(playerToMove, rootDepth, 0, -INFINITY, INFINITY);
+            if (stopped)
+            {
+                break;  // this depth wasn't finished, keep the last one
+            }
+
+            result = new SearchResult();
+            result.score = score;
+            result.depth = rootDepth;
+            addPrincipalVariation(result);
+            result.stats = stats;
+            rootBestMove = pvLength[0] > 0 ? pvTable[0][0] : Move.NONE;
+            recordIteration(result);
+            if (listener != null)
+            {
+                listener.iterationFinished(result);
+            }
+
+            // no moves, a forced mate, stopped, or too little time left for
+            // another depth, which takes several times as long as this one
+            long elapsed = System.currentTimeMillis() - startTime;
+            if (rootBestMove == Move.NONE || Math.abs(score) > MATE_BOUND
+                    || limits.isStopped()
+                    || (limits.timeMillis > 0 && 2 * elapsed > limits.timeMillis))
+            {
+                break;
+            }
+        }
+        updateStats();
+        result.nodes = nodes;
+        result.timeMillis = stats.timeMillis;
+        return result;
+    }
+
+    /**
+     * Adds the depth just finished to the stats
+     */
+    private void recordIteration(SearchResult result)
+    {
+        updateStats();
+        stats.depth = result.depth;
+        result.nodes = nodes;
+        result.timeMillis = stats.timeMillis;
+
+        SearchStats.Iteration iteration = new SearchStats.Iteration();
+        iteration.depth = result.depth;
+        iteration.score = result.score;
+        iteration.nodes = nodes;
+        iteration.timeMillis = stats.timeMillis;
+        iteration.principalVariation = result.principalVariation;
+        stats.iterations.add(iteration);
+    }
+
+    /**
+     * Copies the counts kept during the search into the stats
+     */
+    private void updateStats()
+    {
+        stats.nodes = nodes;
+        stats.qnodes = qnodes;
+        stats.ttProbes = ttProbes;
+        stats.ttHits = ttHits;
+        stats.cutoffs = orderer.getCutoffs();
+        stats.firstMoveCutoffs = orderer.getFirstMoveCutoffs();
+        stats.timeMillis = System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * Sets who to tell about the progress of searches, null for nobody
+     *
+     * @param listener told about each depth finished and the final result
+     */
+    public void setSearchListener(SearchListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Makes a running search return as soon as possible, with the result of
+     * the last depth it finished. May be called from any thread.
+     */
+    public void stop()
+    {
+        stopped = true;
+    }
+
+    /**
+     * Clears a stop left over from an earlier search, before iterate is
+     * called
+     */
+    void clearStop()
+    {
+        stopped = false;
+    }
+
+    /**
+     * Stops the search if its time or node budget has run out or the limits
+     * were stopped. The first depth is always allowed to finish.
+     */
+    private void checkLimits()
+    {
+        if (rootDepth == 1)
+        {
+            return;
+        }
+        if (limits.isStopped()
+                || (limits.nodeLimit > 0 && nodesAgainstLimit() >= limits.nodeLimit)
+                || (limits.timeMillis > 0
+                && System.currentTimeMillis() - startTime >= limits.timeMillis))
+        {
+            stopped = true;
+        }
+    }
+
+    /**
+     * Returns the node count the node budget is checked against: this
+     * engine's own, or the total of every engine sharing a count
+     */
+    private long nodesAgainstLimit()
+    {
+        if (sharedNodes == null)
+        {
+            return nodes;
+        }
+        long total = sharedNodes.addAndGet(nodes - nodesShared);
+        nodesShared = nodes;
+        return total;
+    }
+
+    /**
+     * Makes the node budget of the SearchLimits count the nodes of every
+     * engine given the same counter, as when several search together. The
+     * counter should be reset to 0 before they start.
+     *
+     * @param counter total nodes searched, null for this engine's own only
+     */
+    void setSharedNodeCount(AtomicLong counter)
+    {
+        sharedNodes = counter;
+    }
+
+    /**
+     * Recursive alpha-beta search. Returns the score of the position for the
+     * given player, exact if it lies between alpha and beta, otherwise only a
+     * bound on the real score.
+     *
+     * @param side player to move
+     * @param depth plies left to search
+     * @param ply plies from the root
+     * @param alpha score the player to move is already sure of
+     * @param beta score the opponent is already sure of
+     * @return int - score of the position for side
+     */
+    private int negamax(ChessPiece.Color side, int depth, int ply, int alpha, int beta)
+    {
+        if (depth <= 0 || ply >= MAX_PLY)
+        {
+            return quiesce(side, ply, alpha, beta);
+        }
+        pvLength[ply] = 0;
+        nodes++;
+        if (nodes % CHECK_INTERVAL == 0)
+        {
+            checkLimits();
+        }
+        if (stopped)
+        {
+            return 0;
+        }
+
+        long key = board.getZobristKey(side);
+        long entry = transTable.probe(key);
+        ttProbes++;
+        int hashMove = 0;
+        if (entry != 0)
+        {
+            ttHits++;
+            hashMove = TranspositionTable.moveOf(entry);
+            if (ply > 0 && TranspositionTable.depthOf(entry) >= depth)
+            {
+                int score = scoreFromTable(TranspositionTable.scoreOf(entry), ply);
+                int bound = TranspositionTable.boundOf(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                        || (bound == TranspositionTable.UPPER_BOUND && score <= alpha))
+                {
+                    return score;
+                }
+            }
+        }
+
+        int[] moves = moveLists[ply];
+        int count = board.generateMoves(side, moves);
+        if (count == 0)
+        {
+            // checkmate or stalemate
+            return board.checkForCheck(side) ? -MATE_SCORE + ply : 0;
+        }
+        if (ply == 0 && rootBestMove != Move.NONE)
+        {
+            hashMove = rootBestMove;
+        }
+        int[] scores = moveScores[ply];
+        orderer.scoreMoves(moves, count, scores, board.bitBoard(), hashMove, ply);
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = Move.NONE;
+        UndoRecord undo = undoStack[ply];
+        for (int i = 0; i < count; i++)
+        {
+            int move = MoveOrderer.pickMove(moves, count, scores, i);
+            board.makeMove(move, undo);
+            int score = -negamax(side.opposite(), depth - 1, ply + 1, -beta, -alpha);
+            board.unmakeMove(move, undo);
+            if (stopped)
+            {
+                return 0;   // score is meaningless, don't store anything
+            }
+
+            if (score > bestScore)
+            {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha)
+                {
+                    alpha = score;
+                    updatePrincipalVariation(ply, move);
+                    if (alpha >= beta)
+                    {
+                        orderer.recordCutoff(move, depth, ply, i);
+                        break;  // opponent won't allow this line
+                    }
+                }
+            }
+        }
+
+        int bound = bestScore >= beta ? TranspositionTable.LOWER_BOUND
+                : bestScore > originalAlpha ? TranspositionTable.EXACT
+                : TranspositionTable.UPPER_BOUND;
+        transTable.store(key, bestMove, scoreToTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    /**
+     * Searches captures only, until none are left that could help. The player
+     * to move may "stand pat", accept the evaluation as it is, instead of
+     * capturing, since there is almost always a quiet move at least that good.
+     * Captures that lose material once the exchange is played out are left out.
+     * In check there is no standing pat, every move out of check is searched.
+     *
+     * @param side player to move
+     * @param ply plies from the root
+     * @param alpha score the player to move is already sure of
+     * @param beta score the opponent is already sure of
+     * @return int - score of the position for side
+     */
+    private int quiesce(ChessPiece.Color side, int ply, int alpha, int beta)
+    {
+        pvLength[ply] = 0;
+        nodes++;
+        qnodes++;
+        if (nodes % CHECK_INTERVAL == 0)
+        {
+            checkLimits();
+        }
+        if (stopped)
+        {
+            return 0;
+        }
+        if (ply >= MAX_PLY)
+        {
+            return rater.evaluate(board, side, alpha, beta);
+        }
+
+        boolean inCheck = board.checkForCheck(side);
+        int bestScore;
+        int[] moves = moveLists[ply];
+        int count;
+        if (inCheck)
+        {
+            count = board.generateMoves(side, moves);
+            if (count == 0)
+            {
+                return -MATE_SCORE + ply;
+            }
+            bestScore = -INFINITY;
+        }
+        else
+        {
+            bestScore = rater.evaluate(board, side, alpha, beta);
+            if (bestScore >= beta)
+            {
+                return bestScore;
+            }
+            alpha = Math.max(alpha, bestScore);
+            count = board.generateCaptures(side, moves);
+        }
+
+        int[] scores = moveScores[ply];
+        orderer.scoreMoves(moves, count, scores, board.bitBoard(), Move.NONE, ply);
+        UndoRecord undo = undoStack[ply];
+        for (int i = 0; i < count; i++)
+        {
+            int move = MoveOrderer.pickMove(moves, count, scores, i);
+            if (!inCheck && MoveOrderer.isLosingCapture(scores[i]))
+            {
+                break;  // the rest lose material, see StaticExchange
+            }
+            if (!inCheck && !Move.isPromotion(move) && bestScore + DELTA_MARGIN
+                    + PAWN_SCORE * MoveOrderer.victimValue(move) <= alpha)
+            {
+                continue;   // even winning the piece for free isn't enough
+            }
+
+            board.makeMove(move, undo);
+            int score = -quiesce(side.opposite(), ply + 1, -beta, -alpha);
+            board.unmakeMove(move, undo);
+            if (stopped)
+            {
+                return 0;
+            }
+
+            if (score > bestScore)
+            {
+                bestScore = score;
+                if (score > alpha)
+                {
+                    alpha = score;
+                    updatePrincipalVariation(ply, move);
+                    if (alpha >= beta)
+                    {
+                        break;
+                    }
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    /**
+     * Copies the line found below ply + 1 after move into the line for ply
+     */
+    private void updatePrincipalVariation(int ply, int move)
+    {
+        pvTable[ply][0] = move;
+        for (int i = 0; i < pvLength[ply + 1]; i++)
+        {
+            pvTable[ply][i + 1] = pvTable[ply + 1][i];
+        }
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+    /**
+     * Turns the principal variation of the root into ChessMoves for the
+     * result, playing the line out on a copy of the board so each move's
+     * piece is the one standing there at the time
+     */
+    private void addPrincipalVariation(SearchResult result)
+    {
+        ChessBoard line = new ChessBoard(board);
+        UndoRecord undo = new UndoRecord();
+        for (int i = 0; i < pvLength[0]; i++)
+        {
+            int move = pvTable[0][i];
+            result.principalVariation.add(Move.toChessMove(move, line));
+            line.makeMove(move, undo);
+        }
+        result.bestMove = pvLength[0] > 0 ? result.principalVariation.get(0) : null;
+    }
+
+    /**
+     * Mate scores are stored relative to the position they were found in,
+     * rather than the root, so they stay right when reached at another ply
+     */
+    private static int scoreToTable(int score, int ply)
+    {
+        if (score > MATE_BOUND)
+        {
+            return score + ply;
+        }
+        return score < -MATE_BOUND ? score - ply : score;
+    }
+
+    private static int scoreFromTable(int score, int ply)
+    {
+        if (score > MATE_BOUND)
+        {
+            return score - ply;
+        }
+        return score < -MATE_BOUND ? score + ply : score;
+    }
+
+    public long getNodes()
+    {
+        return nodes;
+    }
+
+    public MoveOrderer getMoveOrderer()
+    {
+        return orderer;
+    }
+}
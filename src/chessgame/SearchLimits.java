@@ -0,0 +1,95 @@
+package chessgame;
+
+/**
+ * This class describes how long a search may run: a maximum depth, a time
+ * budget and a node budget. The search deepens one ply at a time until one of
+ * the limits is reached. A budget of 0 means no limit of that kind.
+ *
+ * The limits can also be cut short from another thread with stop, e.g. when
+ * the user doesn't want to wait any longer. The search then returns the best
+ * move of the last depth it finished. The first depth is always finished, so
+ * there is a move even if stop is called before the search starts.
+ *
+ * @author John Polus
+ */
+public class SearchLimits
+{
+
+    public static final long DEFAULT_TIME_MILLIS = 3000;
+
+    // The limits may be changed while a search runs, e.g. when pondering
+    // turns into a real search, so they are volatile.
+
+    // deepest search to start, in plies
+    public volatile int maxDepth;
+
+    // wall-clock time allowed, in milliseconds
+    public volatile long timeMillis;
+
+    // positions the search may visit
+    public volatile long nodeLimit;
+
+    // set by stop, may be from another thread than the one searching
+    private volatile boolean stopped;
+
+    public SearchLimits(int maxDepth, long timeMillis, long nodeLimit)
+    {
+        this.maxDepth = Math.min(maxDepth, SearchEngine.MAX_PLY);
+        this.timeMillis = timeMillis;
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Copy constructor, copies the three limits but not whether the limits
+     * were stopped, so the copy can be used for a search of its own
+     *
+     * @param other limits to copy
+     */
+    public SearchLimits(SearchLimits other)
+    {
+        this(other.maxDepth, other.timeMillis, other.nodeLimit);
+    }
+
+    /**
+     * Returns limits that search to exactly the given depth, however long it
+     * takes
+     *
+     * @param depth number of plies to search
+     * @return SearchLimits - depth-only limits
+     */
+    public static SearchLimits depth(int depth)
+    {
+        return new SearchLimits(depth, 0, 0);
+    }
+
+    /**
+     * Returns limits that search as deep as possible in the given time
+     *
+     * @param millis time budget in milliseconds
+     * @return SearchLimits - time-only limits
+     */
+    public static SearchLimits time(long millis)
+    {
+        return new SearchLimits(SearchEngine.MAX_PLY, millis, 0);
+    }
+
+    /**
+     * Makes the search using these limits finish as soon as possible. May be
+     * called from any thread, and before or while the search runs.
+     */
+    public void stop()
+    {
+        stopped = true;
+    }
+
+    public boolean isStopped()
+    {
+        return stopped;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "depth " + maxDepth + " time " + timeMillis + "ms nodes " + nodeLimit;
+    }
+}
@@ -0,0 +1,28 @@
+package chessgame;
+
+/**
+ * This interface is for anything that wants to follow a search while it runs,
+ * e.g. to show the line the engine expects or to log how fast it searches.
+ * Set one with AI.setSearchListener. The methods are called on the thread
+ * doing the search, so they should return quickly.
+ *
+ * @author John Polus
+ */
+public interface SearchListener
+{
+
+    /**
+     * Called each time the search finishes another depth
+     *
+     * @param result best move, score and principal variation of the depth
+     * just finished, with the stats of the search so far
+     */
+    void iterationFinished(SearchResult result);
+
+    /**
+     * Called once the search is over, with what it will return
+     *
+     * @param result final result of the search
+     */
+    void searchFinished(SearchResult result);
+}
@@ -0,0 +1,61 @@
+package chessgame;
+
+import java.util.ArrayList;
+
+/**
+ * This is a "struct" holding what a search found: the best move, its score,
+ * the line of play the search expects (principal variation) and how much work
+ * it took to find it.
+ *
+ * @author John Polus
+ */
+public class SearchResult
+{
+
+    // best move for the player to move, null if there are no legal moves
+    public ChessMove bestMove;
+
+    // score from the point of view of the player to move, see SearchEngine
+    public int score;
+
+    // number of plies that were searched
+    public int depth;
+
+    // expected moves for both sides, starting with bestMove
+    public ArrayList<ChessMove> principalVariation;
+
+    // number of positions visited
+    public long nodes;
+
+    public long timeMillis;
+
+    // counts of the work done, see SearchStats
+    public SearchStats stats;
+
+    public SearchResult()
+    {
+        principalVariation = new ArrayList<>();
+    }
+
+    /**
+     * Returns a string with the depth, score, node count and expected line
+     *
+     * @return String - description of this result
+     */
+    @Override
+    public String toString()
+    {
+        String str = "depth " + depth + " score " + score + " nodes " + nodes
+                + " time " + timeMillis + "ms";
+        if (stats != null)
+        {
+            str += " ordering " + Math.round(stats.firstMoveCutoffRate() * 100) + "%";
+        }
+        str += " pv";
+        for (ChessMove move : principalVariation)
+        {
+            str += " " + move.toString();
+        }
+        return str;
+    }
+}
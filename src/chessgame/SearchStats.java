@@ -0,0 +1,132 @@
+package chessgame;
+
+import java.util.ArrayList;
+
+/**
+ * This is a "struct" holding how much work a search did and how well it went:
+ * positions visited, how often the transposition table helped, how often
+ * moves were cut off, and what each depth of the iterative deepening found.
+ * It comes back with the SearchResult and is passed to any SearchListener as
+ * each depth finishes.
+ *
+ * @author John Polus
+ */
+public class SearchStats
+{
+
+    /**
+     * This is a "struct" holding what one depth of the iterative deepening
+     * found, and the totals of the search when it finished
+     */
+    public static class Iteration
+    {
+
+        public int depth;
+        public int score;
+        // nodes and time of the whole search up to the end of this depth
+        public long nodes;
+        public long timeMillis;
+        public ArrayList<ChessMove> principalVariation;
+
+        @Override
+        public String toString()
+        {
+            String str = "depth " + depth + " score " + score + " nodes " + nodes
+                    + " time " + timeMillis + "ms pv";
+            for (ChessMove move : principalVariation)
+            {
+                str += " " + move.toString();
+            }
+            return str;
+        }
+    }
+
+    // positions visited, including those in the quiescence search
+    public long nodes;
+    // positions visited by the quiescence search alone
+    public long qnodes;
+
+    // transposition table lookups, and how many found the position
+    public long ttProbes;
+    public long ttHits;
+
+    // beta cutoffs, and how many of them were made by the first move tried
+    public long cutoffs;
+    public long firstMoveCutoffs;
+
+    // deepest depth finished
+    public int depth;
+    public long timeMillis;
+
+    // one entry for each depth finished, shallowest first
+    public final ArrayList<Iteration> iterations;
+
+    public SearchStats()
+    {
+        iterations = new ArrayList<>();
+    }
+
+    /**
+     * Adds the counts of another search of the same position to these, as
+     * when several threads search together. Depth, time and iterations are
+     * left as they are.
+     *
+     * @param other stats of the other search
+     */
+    public void add(SearchStats other)
+    {
+        nodes += other.nodes;
+        qnodes += other.qnodes;
+        ttProbes += other.ttProbes;
+        ttHits += other.ttHits;
+        cutoffs += other.cutoffs;
+        firstMoveCutoffs += other.firstMoveCutoffs;
+    }
+
+    /**
+     * Returns the number of positions visited each second
+     *
+     * @return long - nodes per second, 0 if no time was measured
+     */
+    public long nodesPerSecond()
+    {
+        return timeMillis == 0 ? 0 : nodes * 1000 / timeMillis;
+    }
+
+    /**
+     * Returns how often a position looked up in the transposition table was
+     * found there
+     *
+     * @return double - fraction of lookups that found the position
+     */
+    public double ttHitRate()
+    {
+        return ttProbes == 0 ? 0.0 : (double) ttHits / ttProbes;
+    }
+
+    /**
+     * Returns how often the first move tried caused the cutoff, the closer to
+     * 1 the better the move ordering, see MoveOrderer
+     *
+     * @return double - fraction of cutoffs made by the first move
+     */
+    public double firstMoveCutoffRate()
+    {
+        return cutoffs == 0 ? 0.0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    /**
+     * Returns a one line summary of the search
+     *
+     * @return String - description of these stats
+     */
+    @Override
+    public String toString()
+    {
+        return "depth " + depth + " nodes " + nodes + " qnodes " + qnodes
+                + " time " + timeMillis + "ms nps " + nodesPerSecond()
+                + " tt hits " + Math.round(ttHitRate() * 100)
+                + "% cutoffs " + cutoffs + " ordering "
+                + Math.round(firstMoveCutoffRate() * 100) + "%";
+    }
+}
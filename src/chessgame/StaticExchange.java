@@ -0,0 +1,126 @@
+package chessgame;
+
+/**
+ * This class works out what a series of captures on one square wins or loses
+ * without playing any moves (static exchange evaluation). Each side captures
+ * with its least valuable piece, and either side may stop capturing when
+ * going on would lose material. Pieces lined up behind a capturing Rook,
+ * Bishop or Queen join in once the piece in front of them has captured
+ * (x-rays), since the attacks are worked out again each time from the pieces
+ * still on the board.
+ *
+ * Values are the same as ChessPiece values, so a pawn is worth 1. En passant
+ * and promotion are not considered. Nothing is allocated, so the exchange can
+ * be worked out for every capture searched.
+ *
+ * @author John Polus
+ */
+public final class StaticExchange
+{
+
+    private StaticExchange()
+    {
+    }
+
+    /**
+     * Returns how much the side moving wins by the capture from one square to
+     * another, once all the captures that follow on that square are played
+     * out
+     *
+     * @param bits board the capture is made on
+     * @param from square of the capturing piece
+     * @param to square of the piece being captured
+     * @return int - material won, negative if the capture loses material
+     */
+    public static int evaluate(BitBoard bits, int from, int to)
+    {
+        int color = bits.colorAt(from);
+        int attacker = bits.typeAt(from);
+        int victim = bits.typeAt(to);
+        int victimValue = victim < 0 ? 0 : BitBoard.VALUES[victim];
+        long occupied = bits.getOccupied() & ~(1L << from);
+        return victimValue - exchange(bits, to, occupied, 1 - color,
+                BitBoard.VALUES[attacker]);
+    }
+
+    /**
+     * Returns how much the given color would lose if its piece on the given
+     * square were captured, 0 if it is safe to leave where it is
+     *
+     * @param bits board to look at
+     * @param square square of the piece
+     * @return int - material the opponent can win on that square
+     */
+    public static int threatened(BitBoard bits, int square)
+    {
+        int color = bits.colorAt(square);
+        int type = bits.typeAt(square);
+        return exchange(bits, square, bits.getOccupied(), 1 - color, BitBoard.VALUES[type]);
+    }
+
+    /**
+     * Returns what the side to move wins by capturing a piece of the given
+     * value on the given square, or 0 if it is better not to capture at all
+     *
+     * @param bits board the exchange happens on
+     * @param to square the exchange happens on
+     * @param occupied pieces that haven't captured yet
+     * @param side color to capture next
+     * @param targetValue value of the piece standing on the square
+     * @return int - material won, never negative
+     */
+    private static int exchange(BitBoard bits, int to, long occupied, int side, int targetValue)
+    {
+        int from = leastValuableAttacker(bits, to, occupied, side);
+        if (from == BitBoard.NO_SQUARE)
+        {
+            return 0;
+        }
+        int captureValue = BitBoard.VALUES[bits.typeAt(from)];
+        int gain = targetValue - exchange(bits, to, occupied & ~(1L << from), 1 - side,
+                captureValue);
+        return Math.max(0, gain);
+    }
+
+    /**
+     * Finds the least valuable piece of the given color attacking the given
+     * square, only counting pieces in occupied
+     *
+     * @return int - square of the attacker, NO_SQUARE if there is none
+     */
+    private static int leastValuableAttacker(BitBoard bits, int to, long occupied, int side)
+    {
+        long attackers = AttackTables.PAWN_ATTACKS[1 - side][to]
+                & bits.getPieceMask(side, BitBoard.PAWN);
+        if ((attackers &= occupied) != 0)
+        {
+            return Long.numberOfTrailingZeros(attackers);
+        }
+        attackers = AttackTables.KNIGHT_ATTACKS[to] & bits.getPieceMask(side, BitBoard.KNIGHT)
+                & occupied;
+        if (attackers != 0)
+        {
+            return Long.numberOfTrailingZeros(attackers);
+        }
+        long diagonals = AttackTables.bishopAttacks(to, occupied) & occupied;
+        attackers = diagonals & bits.getPieceMask(side, BitBoard.BISHOP);
+        if (attackers != 0)
+        {
+            return Long.numberOfTrailingZeros(attackers);
+        }
+        long lines = AttackTables.rookAttacks(to, occupied) & occupied;
+        attackers = lines & bits.getPieceMask(side, BitBoard.ROOK);
+        if (attackers != 0)
+        {
+            return Long.numberOfTrailingZeros(attackers);
+        }
+        attackers = (diagonals | lines) & bits.getPieceMask(side, BitBoard.QUEEN);
+        if (attackers != 0)
+        {
+            return Long.numberOfTrailingZeros(attackers);
+        }
+        attackers = AttackTables.KING_ATTACKS[to] & bits.getPieceMask(side, BitBoard.KING)
+                & occupied;
+        return attackers == 0 ? BitBoard.NO_SQUARE : Long.numberOfTrailingZeros(attackers);
+    }
+}
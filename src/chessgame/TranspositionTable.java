@@ -0,0 +1,221 @@
+package chessgame;
+
+import java.util.Arrays;
+
+/**
+ * This class remembers what a search found out about positions it has already
+ * seen, so a position reached again through a different move order doesn't
+ * have to be searched again. Entries are looked up by Zobrist key and hold the
+ * depth searched, the score and whether it is exact or only a bound, and the
+ * best move found.
+ *
+ * The table has a power-of-two number of buckets, each with two entries. The
+ * first entry keeps whichever search went deepest, the second always takes
+ * the newest result, so deep results survive without shutting out new ones.
+ * Each entry is two longs, the key XORed with the data and the data itself,
+ * which lets threads share a table without locking: an entry torn by two
+ * writers just fails to match its key.
+ *
+ * @author John Polus
+ */
+public class TranspositionTable
+{
+
+    // Bound types, what the stored score means
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+
+    public static final int DEFAULT_SIZE_MB = 16;
+
+    private static final int BYTES_PER_BUCKET = 2 * 2 * 8;
+    private static final int MAX_BUCKETS = 1 << 29;
+
+    // Layout of the data long:
+    // bits 0-31 move, 32-47 score, 48-55 depth, 56-57 bound, 58-63 generation
+    private static final int SCORE_SHIFT = 32;
+    private static final int DEPTH_SHIFT = 48;
+    private static final int BOUND_SHIFT = 56;
+    private static final int GENERATION_SHIFT = 58;
+
+    private final long[] keys;
+    private final long[] data;
+    private final long bucketMask;
+    private final int sizeMB;
+
+    private int generation;
+
+    // statistics, not exact when several threads share the table
+    private long probes;
+    private long hits;
+
+    /**
+     * Creates a table that takes up at most the given number of megabytes,
+     * rounded down to a power of two number of buckets
+     *
+     * @param sizeMB memory to use, in megabytes
+     */
+    public TranspositionTable(int sizeMB)
+    {
+        long buckets = Math.max(1L, (long) sizeMB * 1024 * 1024 / BYTES_PER_BUCKET);
+        buckets = Math.min(Long.highestOneBit(buckets), MAX_BUCKETS);
+        keys = new long[(int) buckets * 2];
+        data = new long[(int) buckets * 2];
+        bucketMask = buckets - 1;
+        this.sizeMB = sizeMB;
+        generation = 0;
+    }
+
+    /**
+     * Looks up the given position
+     *
+     * @param key Zobrist key of the position
+     * @return long - the stored data, to be read with moveOf, scoreOf, depthOf
+     * and boundOf, or 0 if the position isn't in the table
+     */
+    public long probe(long key)
+    {
+        probes++;
+        int index = (int) (key & bucketMask) << 1;
+        for (int i = index; i < index + 2; i++)
+        {
+            long entry = data[i];
+            if ((keys[i] ^ entry) == key && entry != 0)
+            {
+                hits++;
+                return entry;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Stores a search result for the given position
+     *
+     * @param key Zobrist key of the position
+     * @param move best move found, 0 if none
+     * @param score score of the position, must fit in 16 bits
+     * @param depth how many plies deep the position was searched
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND
+     */
+    public void store(long key, int move, int score, int depth, int bound)
+    {
+        int index = (int) (key & bucketMask) << 1;
+        long oldDeep = data[index];
+        boolean samePosition = (keys[index] ^ oldDeep) == key;
+        if (move == 0 && samePosition)
+        {
+            // keep the best move from an earlier search of this position
+            move = moveOf(oldDeep);
+        }
+        long entry = (move & 0xFFFFFFFFL)
+                | ((score & 0xFFFFL) << SCORE_SHIFT)
+                | ((long) Math.min(depth, 255) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) generation << GENERATION_SHIFT);
+
+        // depth-preferred entry takes the result if it is at least as deep
+        // or what it holds is left over from an earlier search
+        if (oldDeep == 0 || samePosition || depth >= depthOf(oldDeep)
+                || generationOf(oldDeep) != generation)
+        {
+            data[index] = entry;
+            keys[index] = key ^ entry;
+        }
+        else // always-replace entry
+        {
+            data[index + 1] = entry;
+            keys[index + 1] = key ^ entry;
+        }
+    }
+
+    /**
+     * Should be called at the start of each new search, so entries left from
+     * earlier searches give way to new ones in the depth-preferred slots
+     */
+    public void newSearch()
+    {
+        generation = (generation + 1) & 63;
+    }
+
+    /**
+     * Empties the table
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+        generation = 0;
+        probes = 0;
+        hits = 0;
+    }
+
+    public static int moveOf(long entry)
+    {
+        return (int) entry;
+    }
+
+    public static int scoreOf(long entry)
+    {
+        return (short) (entry >>> SCORE_SHIFT);
+    }
+
+    public static int depthOf(long entry)
+    {
+        return (int) (entry >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static int boundOf(long entry)
+    {
+        return (int) (entry >>> BOUND_SHIFT) & 3;
+    }
+
+    private static int generationOf(long entry)
+    {
+        return (int) (entry >>> GENERATION_SHIFT) & 63;
+    }
+
+    public int getSizeMB()
+    {
+        return sizeMB;
+    }
+
+    /**
+     * Returns how many positions the table can hold
+     *
+     * @return int - number of entries
+     */
+    public int capacity()
+    {
+        return data.length;
+    }
+
+    public long getProbes()
+    {
+        return probes;
+    }
+
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Estimates how full the table is from the first thousand entries
+     *
+     * @return int - number of used entries per thousand
+     */
+    public int hashFull()
+    {
+        int sample = Math.min(1000, data.length);
+        int used = 0;
+        for (int i = 0; i < sample; i++)
+        {
+            if (data[i] != 0 && generationOf(data[i]) == generation)
+            {
+                used++;
+            }
+        }
+        return used * 1000 / sample;
+    }
+}
@@ -0,0 +1,38 @@
+package chessgame;
+
+/**
+ * This is a "struct" that holds everything ChessBoard.makeMove changes that
+ * cannot be worked out from the move itself, so that ChessBoard.unmakeMove can
+ * put the board back exactly as it was. One record can be reused for many
+ * moves, as long as each unmakeMove gets the record of its own makeMove.
+ *
+ * @author John Polus
+ */
+public class UndoRecord
+{
+
+    // piece removed from the board by the move, null if nothing was captured
+    public ChessPiece captured;
+    // where the captured piece stood, differs from destination for en passant
+    public int capturedX;
+    public int capturedY;
+
+    // hasMoved flag of the moving piece before the move
+    public boolean moverHadMoved;
+
+    // hasMoved flag of the rook before the move, only used when castling
+    public boolean rookHadMoved;
+
+    // pawn that was replaced on promotion, null if the move didn't promote
+    public ChessPiece promotedPawn;
+
+    // en passant square before the move, BitBoard.NO_SQUARE if there was none
+    public int enPassantSquare;
+
+    public UndoRecord()
+    {
+        captured = null;
+        promotedPawn = null;
+        enPassantSquare = BitBoard.NO_SQUARE;
+    }
+}
@@ -0,0 +1,93 @@
+package chessgame;
+
+import java.util.Random;
+
+/**
+ * This class holds the random numbers used to give each board position a
+ * 64-bit hash key. A position's key is the XOR of one number for each piece on
+ * each square, plus numbers for the side to move, castling rights and en
+ * passant file. Because XOR undoes itself, a key can be updated as pieces are
+ * placed and removed instead of being computed from scratch.
+ *
+ * @author John Polus
+ */
+public final class Zobrist
+{
+
+    // fixed seed so keys are the same from run to run
+    private static final long SEED = 0x5DEECE66DL;
+
+    // indexed by [color * BitBoard.NUM_TYPES + type][square]
+    private static final long[][] PIECE_KEYS = new long[2 * BitBoard.NUM_TYPES][64];
+    private static final long BLACK_TO_MOVE_KEY;
+    // indexed by the combination of BitBoard.CASTLE_ flags
+    private static final long[] CASTLING_KEYS = new long[16];
+    // indexed by the file (x coordinate) of the en passant square
+    private static final long[] EN_PASSANT_KEYS = new long[8];
+
+    static
+    {
+        Random random = new Random(SEED);
+        for (long[] keys : PIECE_KEYS)
+        {
+            for (int square = 0; square < 64; square++)
+            {
+                keys[square] = random.nextLong();
+            }
+        }
+        BLACK_TO_MOVE_KEY = random.nextLong();
+
+        // each right gets its own number, combinations are XORs of those
+        long[] rightKeys = new long[4];
+        for (int i = 0; i < rightKeys.length; i++)
+        {
+            rightKeys[i] = random.nextLong();
+        }
+        for (int rights = 0; rights < CASTLING_KEYS.length; rights++)
+        {
+            for (int i = 0; i < rightKeys.length; i++)
+            {
+                if ((rights & (1 << i)) != 0)
+                {
+                    CASTLING_KEYS[rights] ^= rightKeys[i];
+                }
+            }
+        }
+
+        for (int file = 0; file < EN_PASSANT_KEYS.length; file++)
+        {
+            EN_PASSANT_KEYS[file] = random.nextLong();
+        }
+    }
+
+    private Zobrist()
+    {
+    }
+
+    public static long pieceKey(int color, int type, int square)
+    {
+        return PIECE_KEYS[color * BitBoard.NUM_TYPES + type][square];
+    }
+
+    public static long sideKey(ChessPiece.Color sideToMove)
+    {
+        return sideToMove == ChessPiece.Color.BLACK ? BLACK_TO_MOVE_KEY : 0L;
+    }
+
+    public static long castlingKey(int rights)
+    {
+        return CASTLING_KEYS[rights & 15];
+    }
+
+    /**
+     * Returns the number for the given en passant square, which depends only
+     * on its file
+     *
+     * @param square en passant square, or BitBoard.NO_SQUARE
+     * @return long - number to XOR into the key, 0 if there is no square
+     */
+    public static long enPassantKey(int square)
+    {
+        return square == BitBoard.NO_SQUARE ? 0L : EN_PASSANT_KEYS[BitBoard.xOf(square)];
+    }
+}
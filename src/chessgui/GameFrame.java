@@ -185,8 +185,7 @@ public class GameFrame extends JFrame implements ActionListener, PropertyChangeL
     private Scoreboard scoreboard;
 
     private BlockingQueue<GameRequest> tasks; // tasks that need to be done on the processing thread
-    private BlockingQueue<GameRequest> responses; // responses to processing tasks
-    private Timer checkForResponseTimer;
+    private Timer ellipsisTimer; // animates the label while the CPU is thinking
     private boolean boardEnabled = true;
 
     public static void main(String[] args)
@@ -254,16 +253,30 @@ public class GameFrame extends JFrame implements ActionListener, PropertyChangeL
 
     private void initGameServer()
     {
-        // set up GUI's response timer
-        checkForResponseTimer = new Timer(50, this);
-        checkForResponseTimer.setActionCommand("Response Queue Timer");
-        checkForResponseTimer.start();
+        ellipsisTimer = new Timer(50, this);
+        ellipsisTimer.setActionCommand("Ellipsis Timer");
 
-        // set up "server" to send messages to
+        // set up "server" to send messages to, responses are handed back to
+        // the event dispatch thread as soon as they are ready
         tasks = new ArrayBlockingQueue(25);
-        responses = new ArrayBlockingQueue(25);
-        controller = new GameController(tasks, responses);
-        new Thread(controller).start();
+        controller = new GameController(tasks, new ResponseListener()
+        {
+            @Override
+            public void responseReady(final GameRequest response)
+            {
+                SwingUtilities.invokeLater(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        processResponse(response);
+                    }
+                });
+            }
+        });
+        Thread controllerThread = new Thread(controller, "GameController");
+        controllerThread.setDaemon(true);
+        controllerThread.start();
 
         gamePanel.setMoveList(controller.getMoveList());
     }
@@ -384,6 +397,9 @@ public class GameFrame extends JFrame implements ActionListener, PropertyChangeL
             case "mode":
                 handleModePropertyChange(event);
                 break;
+            case "ponder":
+                controller.setPondering((Boolean) event.getNewValue());
+                break;
             case "Save":
                 saveToFile();
                 break;
@@ -517,12 +533,8 @@ public class GameFrame extends JFrame implements ActionListener, PropertyChangeL
             case "Main Menu":
                 modeMenu.setMode(GameMode.UNDECIDED);
                 break;
-            case "Response Queue Timer":
+            case "Ellipsis Timer":
                 updateEllipsis();
-                if (responses.peek() != null)
-                {
-                    processResponse(responses.poll());
-                }
         }
     }
 
@@ -547,6 +559,10 @@ public class GameFrame extends JFrame implements ActionListener, PropertyChangeL
 
     private void processResponse(GameRequest response)
     {
+        if (response.task == GameTask.FIND_BEST_MOVE)
+        {
+            ellipsisTimer.stop();
+        }
         if (!response.success)
         {
             System.out.println("Task unsuccessful: " + response.task);
@@ -601,6 +617,7 @@ public class GameFrame extends JFrame implements ActionListener, PropertyChangeL
                     controller.promoteToThisType(piece);
                     move.promotionPiece = piece.oneLetterIdentifier();
                 }
+                gamePanel.setMoveList(controller.getMoveList());
                 gamePanel.myBoard.setPieces(controller.getPiecesList());
                 gamePanel.switchPlayerToMove();
                 gamePanel.myBoard.highlightPreviousMove(move);
@@ -615,6 +632,7 @@ public class GameFrame extends JFrame implements ActionListener, PropertyChangeL
                 if (controller.getPlayerToMove() != humanPlayer)
                 {
                     lbl_pieceToAdd.setText("CPU is thinking ...");
+                    ellipsisTimer.start();
                     addRequest(GameTask.FIND_BEST_MOVE, null);
                     boardEnabled = false;
                 }
@@ -634,6 +652,7 @@ public class GameFrame extends JFrame implements ActionListener, PropertyChangeL
                 repaint();
                 break;
             case SET_PLAYER_TO_MOVE:
+            case STOP_SEARCH:
                 break;
             default:
                 System.out.println("Response: " + response.info.toString());
@@ -694,6 +713,7 @@ public class GameFrame extends JFrame implements ActionListener, PropertyChangeL
         if (GameController.loadPositionFromFile(pathname, cb))
         {
             controller.setBoardPosition(cb.getPieces(), humanPlayer);
+            gamePanel.setMoveList(controller.getMoveList());
             gamePanel.myBoard.setPieces(cb.getPieces());
             repaint();
             return true;
@@ -749,6 +769,7 @@ public class GameFrame extends JFrame implements ActionListener, PropertyChangeL
     private void setUpNewGame()
     {
         controller.startNewGame();
+        gamePanel.setMoveList(controller.getMoveList());
         gamePanel.myBoard.setPieces(controller.getPiecesList());
         repaint();
     }
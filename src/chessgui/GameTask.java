@@ -14,5 +14,6 @@ public enum GameTask
     NONE,
     SET_BOARD_POSITION,
     SET_PLAYER_TO_MOVE,
+    STOP_SEARCH,
     VALIDATE_POSITION,
 }
@@ -4,6 +4,7 @@ import chessgame.GameMode;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
 
@@ -17,6 +18,7 @@ public class ModeMenu extends JMenu implements ActionListener
 {
 
     private JMenuItem item_singlePlayer, item_versus, item_setUp, item_puzzle;
+    private JCheckBoxMenuItem item_ponder;
     private GameMode mode;
 
     public ModeMenu()
@@ -49,10 +51,18 @@ public class ModeMenu extends JMenu implements ActionListener
         item_puzzle.setActionCommand("Puzzle");
         item_puzzle.addActionListener(this);
 
+        // off unless asked for, thinking on the player's time keeps a core busy
+        item_ponder = new JCheckBoxMenuItem("Computer Thinks on Your Time", false);
+        item_ponder.setMnemonic(KeyEvent.VK_T);
+        item_ponder.setActionCommand("Ponder");
+        item_ponder.addActionListener(this);
+
         add(item_singlePlayer);
         add(item_versus);
         add(item_setUp);
         add(item_puzzle);
+        addSeparator();
+        add(item_ponder);
     }
 
     @Override
@@ -73,6 +83,10 @@ public class ModeMenu extends JMenu implements ActionListener
             case "Puzzle":
                 setGameMode(GameMode.REFERENCE);
                 break;
+            case "Ponder":
+                firePropertyChange("ponder", !item_ponder.isSelected(),
+                        item_ponder.isSelected());
+                break;
         }
     }
 
@@ -0,0 +1,198 @@
+package chessutil;
+
+import chessgame.BitBoard;
+import chessgame.ChessBoard;
+import chessgame.ChessPiece;
+import chessgame.Move;
+import chessgame.MoveGenerator;
+import chessgame.UndoRecord;
+
+/**
+ * Counts the positions reached after every possible sequence of legal moves
+ * to a given depth (perft). The counts for well known positions have been
+ * worked out by many other programs, so any difference points to a bug in
+ * move generation or in making and taking back moves. It also measures how
+ * many positions a second the move generator gets through.
+ *
+ * Usage:
+ *   Perft                 checks the reference positions to DEFAULT_DEPTH
+ *   Perft depth           checks the reference positions to the given depth
+ *   Perft depth fen...    counts the given position, one line per first move
+ *                         (divide), to find where a count goes wrong
+ *
+ * The ant target "perft" runs this class, passing on the perft.args property.
+ *
+ * @author John Polus
+ */
+public class Perft
+{
+
+    public static final int DEFAULT_DEPTH = 4;
+
+    private static final int MAX_DEPTH = 16;
+
+    // Reference positions and their published counts for depth 1, 2, ...
+    private static final String[] NAMES =
+    {
+        "start position", "kiwipete", "position 3", "position 4", "position 5"
+    };
+
+    private static final String[] FENS =
+    {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"
+    };
+
+    private static final long[][] EXPECTED =
+    {
+        {20, 400, 8902, 197281, 4865609, 119060324},
+        {48, 2039, 97862, 4085603, 193690690},
+        {14, 191, 2812, 43238, 674624, 11030083, 178633661},
+        {6, 264, 9467, 422333, 15833292},
+        {44, 1486, 62379, 2103487, 89941194}
+    };
+
+    private final int[][] moves;
+    private final UndoRecord[] undo;
+
+    public Perft()
+    {
+        moves = new int[MAX_DEPTH][MoveGenerator.MAX_MOVES];
+        undo = new UndoRecord[MAX_DEPTH];
+        for (int i = 0; i < undo.length; i++)
+        {
+            undo[i] = new UndoRecord();
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+        if (depth < 1 || depth > MAX_DEPTH)
+        {
+            System.out.println("Depth must be between 1 and " + MAX_DEPTH);
+            System.exit(2);
+        }
+        if (args.length > 1)
+        {
+            StringBuilder fen = new StringBuilder();
+            for (int i = 1; i < args.length; i++)
+            {
+                fen.append(args[i]).append(' ');
+            }
+            new Perft().divide(BitBoard.fromFen(fen.toString()), depth);
+        }
+        else if (!new Perft().checkReferencePositions(depth))
+        {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Counts every reference position to the given depth, or as deep as its
+     * count is known, and compares with the published counts
+     *
+     * @param depth deepest depth to count
+     * @return boolean - true if every count was right
+     */
+    public boolean checkReferencePositions(int depth)
+    {
+        boolean allPassed = true;
+        long totalNodes = 0;
+        long totalNanos = 0;
+        for (int i = 0; i < FENS.length; i++)
+        {
+            BitBoard position = BitBoard.fromFen(FENS[i]);
+            int d = Math.min(depth, EXPECTED[i].length);
+            long start = System.nanoTime();
+            long nodes = perft(new ChessBoard(position), position.getSideToMove(), d, 0);
+            long nanos = System.nanoTime() - start;
+            totalNodes += nodes;
+            totalNanos += nanos;
+
+            boolean passed = nodes == EXPECTED[i][d - 1];
+            allPassed &= passed;
+            System.out.println(String.format("%-15s depth %d %12d %s %8d ms %12d nps",
+                    NAMES[i], d, nodes, passed ? "ok  " : "FAIL (expected "
+                    + EXPECTED[i][d - 1] + ")", nanos / 1000000, nodesPerSecond(nodes, nanos)));
+        }
+        System.out.println(String.format("%-15s %20d %s %8d ms %12d nps", "total", totalNodes,
+                allPassed ? "ok  " : "FAIL", totalNanos / 1000000,
+                nodesPerSecond(totalNodes, totalNanos)));
+        return allPassed;
+    }
+
+    /**
+     * Prints the count below each legal first move of the given position,
+     * then the total
+     *
+     * @param position position to count from
+     * @param depth plies to count, including the first move
+     * @return long - number of positions at the given depth
+     */
+    public long divide(BitBoard position, int depth)
+    {
+        ChessBoard board = new ChessBoard(position);
+        ChessPiece.Color color = position.getSideToMove();
+        int[] rootMoves = moves[0];
+        int count = board.generateMoves(color, rootMoves);
+        long total = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++)
+        {
+            int move = rootMoves[i];
+            long nodes = 1;
+            if (depth > 1)
+            {
+                board.makeMove(move, undo[0]);
+                nodes = perft(board, color.opposite(), depth - 1, 1);
+                board.unmakeMove(move, undo[0]);
+            }
+            total += nodes;
+            System.out.println(Move.toString(move) + ": " + nodes);
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.println();
+        System.out.println("Moves: " + count);
+        System.out.println("Nodes: " + total);
+        System.out.println("Time:  " + nanos / 1000000 + " ms, "
+                + nodesPerSecond(total, nanos) + " nps");
+        return total;
+    }
+
+    /**
+     * Counts the positions the given number of plies below the given one.
+     * At the last ply the moves are only counted, not played.
+     *
+     * @param board board to count from, left as it was
+     * @param color player to move
+     * @param depth plies left to count, at least 1
+     * @param ply plies from the root, to pick the move array to use
+     * @return long - number of positions at the given depth
+     */
+    public long perft(ChessBoard board, ChessPiece.Color color, int depth, int ply)
+    {
+        int[] plyMoves = moves[ply];
+        int count = board.generateMoves(color, plyMoves);
+        if (depth == 1)
+        {
+            return count;
+        }
+        long nodes = 0;
+        for (int i = 0; i < count; i++)
+        {
+            board.makeMove(plyMoves[i], undo[ply]);
+            nodes += perft(board, color.opposite(), depth - 1, ply + 1);
+            board.unmakeMove(plyMoves[i], undo[ply]);
+        }
+        return nodes;
+    }
+
+    private static long nodesPerSecond(long nodes, long nanos)
+    {
+        return nanos == 0 ? 0 : nodes * 1000000000L / nanos;
+    }
+}
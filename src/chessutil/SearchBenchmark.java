@@ -0,0 +1,115 @@
+package chessutil;
+
+import chessgame.AI;
+import chessgame.ChessBoard;
+import chessgame.ChessMove;
+import chessgame.ChessPiece;
+import chessgame.SearchLimits;
+import chessgame.SearchResult;
+
+/**
+ * Measures how much faster the PARALLEL search reaches a fixed depth than the
+ * single threaded ALPHA_BETA search, over a fixed set of positions. Each
+ * search starts with an empty transposition table.
+ *
+ * Usage: SearchBenchmark [threads] [depth]
+ *
+ * @author John Polus
+ */
+public class SearchBenchmark
+{
+
+    public static final int DEFAULT_DEPTH = 4;
+
+    // Positions to search, as moves played from the start position
+    private static final String[] SUITE =
+    {
+        "",
+        "e2e4 e7e5 g1f3 b8c6 f1b5 a7a6",
+        "d2d4 d7d5 c2c4 e7e6 b1c3 g8f6",
+        "e2e4 c7c5 g1f3 d7d6 d2d4 c5d4 f3d4 g8f6 b1c3",
+        "e2e4 e7e5 g1f3 b8c6 f1c4 f8c5 c2c3 g8f6 d2d4"
+    };
+
+    public static void main(String[] args)
+    {
+        int threads = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_DEPTH;
+        System.out.println("Depth " + depth + ", " + threads + " threads, "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+
+        // let the JIT compile the search before anything is timed
+        timeSearch(new ChessBoard(), ChessPiece.Color.WHITE, depth, AI.Algorithm.PARALLEL, threads);
+
+        long totalSingle = 0;
+        long totalParallel = 0;
+        for (String line : SUITE)
+        {
+            ChessBoard board = new ChessBoard();
+            ChessPiece.Color toMove = ChessPiece.Color.WHITE;
+            for (String move : line.trim().split(" "))
+            {
+                if (!move.isEmpty())
+                {
+                    board = board.advancePosition(findMove(board, toMove, move));
+                    toMove = toMove.opposite();
+                }
+            }
+
+            long single = timeSearch(board, toMove, depth, AI.Algorithm.ALPHA_BETA, 1);
+            long parallel = timeSearch(board, toMove, depth, AI.Algorithm.PARALLEL, threads);
+            totalSingle += single;
+            totalParallel += parallel;
+            System.out.println(String.format("%-45s %6dms %6dms  x%.2f",
+                    line.isEmpty() ? "start position" : line, single, parallel,
+                    (double) single / Math.max(1, parallel)));
+        }
+        System.out.println(String.format("%-45s %6dms %6dms  x%.2f", "total",
+                totalSingle, totalParallel, (double) totalSingle / Math.max(1, totalParallel)));
+    }
+
+    /**
+     * Searches the given position to the given depth with a new AI
+     *
+     * @return long - time taken in milliseconds
+     */
+    private static long timeSearch(ChessBoard board, ChessPiece.Color toMove, int depth,
+            AI.Algorithm algorithm, int threads)
+    {
+        AI ai = new AI(board, toMove);
+        ai.setAlgorithm(algorithm);
+        ai.setThreads(threads);
+        long start = System.currentTimeMillis();
+        ai.findBestMove(SearchLimits.depth(depth));
+        long time = System.currentTimeMillis() - start;
+        SearchResult result = ai.getLastSearchResult();
+        if (result.bestMove == null)
+        {
+            System.out.println("No move found for " + board);
+        }
+        return time;
+    }
+
+    /**
+     * Finds the legal move written in coordinates, like "e2e4"
+     *
+     * @return ChessMove - the matching move
+     */
+    private static ChessMove findMove(ChessBoard board, ChessPiece.Color toMove, String move)
+    {
+        int xFrom = move.charAt(0) - 'a';
+        int yFrom = '8' - move.charAt(1);
+        int xTo = move.charAt(2) - 'a';
+        int yTo = '8' - move.charAt(3);
+        for (ChessMove cm : board.findAllMoves(toMove))
+        {
+            if (cm.piece.getX() == xFrom && cm.piece.getY() == yFrom
+                    && cm.getXDest() == xTo && cm.getYDest() == yTo)
+            {
+                return cm;
+            }
+        }
+        throw new IllegalArgumentException("Illegal move " + move);
+    }
+}
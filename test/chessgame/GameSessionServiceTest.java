@@ -0,0 +1,229 @@
+package chessgame;
+
+import chessgui.GameRequest;
+import chessgui.GameTask;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for GameSessionService
+ *
+ * @author John Polus
+ */
+public class GameSessionServiceTest
+{
+
+    private GameSessionService service;
+
+    @Before
+    public void setUp()
+    {
+        service = new GameSessionService(2, 10, GameSessionService.DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    @After
+    public void tearDown()
+    {
+        service.shutdown();
+    }
+
+    /**
+     * Replaces the service made by setUp with one that closes sessions after
+     * the given idle time
+     */
+    private void useIdleTimeout(long idleTimeoutMillis)
+    {
+        service.shutdown();
+        service = new GameSessionService(2, 10, idleTimeoutMillis);
+    }
+
+    private static ChessMove moveFromStart(int x, int y, int xDest, int yDest)
+    {
+        return new ChessMove(new ChessBoard().getCopyOfPieceAt(x, y), xDest, yDest);
+    }
+
+    /**
+     * Tasks submitted to one session are done one at a time, in the order
+     * they were submitted, even with more than one worker. The moves only
+     * succeed if each is played after the one before it.
+     */
+    @Test(timeout = 20000)
+    public void testTasksDoneInOrder() throws Exception
+    {
+        String id = service.createSession();
+        ChessMove[] moves =
+        {
+            moveFromStart(4, 6, 4, 4), // e4
+            moveFromStart(4, 1, 4, 3), // e5
+            moveFromStart(6, 7, 5, 5), // Nf3
+            moveFromStart(1, 0, 2, 2)  // Nc6
+        };
+        final List<Integer> finished = Collections.synchronizedList(new ArrayList<Integer>());
+        List<CompletableFuture<GameRequest>> responses = new ArrayList<>();
+        // a search first, so the moves wait behind a task that takes a while
+        responses.add(service.submit(id, GameTask.FIND_BEST_MOVE, SearchLimits.depth(4)));
+        for (ChessMove move : moves)
+        {
+            responses.add(service.submit(id, GameTask.PLAY_MOVE, move));
+        }
+        for (int i = 0; i < responses.size(); i++)
+        {
+            final int index = i;
+            responses.get(i).thenRun(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    finished.add(index);
+                }
+            });
+        }
+
+        for (CompletableFuture<GameRequest> response : responses)
+        {
+            assertTrue(response.get(10, TimeUnit.SECONDS).success);
+        }
+        assertEquals(finished.toString(), 0, (int) finished.get(0));
+        for (int i = 1; i < finished.size(); i++)
+        {
+            assertTrue(finished.toString(), finished.get(i - 1) < finished.get(i));
+        }
+    }
+
+    /**
+     * A session that has had nothing to do for longer than the idle timeout
+     * is closed by evictIdleSessions, one that was just used is not
+     */
+    @Test(timeout = 20000)
+    public void testIdleSessionEvicted() throws Exception
+    {
+        useIdleTimeout(300);
+        String idle = service.createSession();
+        Thread.sleep(400);
+        String used = service.createSession();
+        service.evictIdleSessions();
+
+        assertFalse(service.hasSession(idle));
+        assertTrue(service.hasSession(used));
+        // the slot of the closed session can be used again
+        assertEquals(1, service.getSessionCount());
+    }
+
+    /**
+     * A session with a task running and another waiting is not closed, however
+     * long ago it was submitted
+     */
+    @Test(timeout = 20000)
+    public void testBusySessionNotEvicted() throws Exception
+    {
+        useIdleTimeout(300);
+        String id = service.createSession();
+        CompletableFuture<GameRequest> search = service.submit(id,
+                GameTask.FIND_BEST_MOVE, SearchLimits.depth(SearchEngine.MAX_PLY));
+        CompletableFuture<GameRequest> move = service.submit(id,
+                GameTask.PLAY_MOVE, moveFromStart(4, 6, 4, 4));
+        Thread.sleep(400);
+        service.evictIdleSessions();
+        assertTrue(service.hasSession(id));
+
+        GameRequest stop;
+        do
+        {
+            stop = service.submit(id, GameTask.STOP_SEARCH, null).get();
+        } while (!stop.success && !search.isDone());
+        assertTrue(search.get(5, TimeUnit.SECONDS).success);
+        assertTrue(move.get(5, TimeUnit.SECONDS).success);
+        assertTrue(service.hasSession(id));
+    }
+
+    /**
+     * Many threads creating sessions at once never open more than
+     * maxSessions
+     */
+    @Test(timeout = 20000)
+    public void testMaxSessions() throws Exception
+    {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger created = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int j = 0; j < 10; j++)
+                        {
+                            service.createSession();
+                            created.incrementAndGet();
+                        }
+                    } catch (IllegalStateException | InterruptedException e)
+                    {
+                        // full, as expected
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertEquals(10, created.get());
+        assertEquals(10, service.getSessionCount());
+    }
+
+    /**
+     * A search deep enough to take far longer than the test is stopped by a
+     * STOP_SEARCH submitted while it runs, and answers with its best move.
+     * The SearchLimits given with the request are left as they were.
+     */
+    @Test(timeout = 20000)
+    public void testStopSearch() throws Exception
+    {
+        String id = service.createSession();
+        SearchLimits limits = SearchLimits.depth(SearchEngine.MAX_PLY);
+        CompletableFuture<GameRequest> search = service.submit(id,
+                GameTask.FIND_BEST_MOVE, limits);
+        // the search may not have started yet, in which case there is nothing
+        // to stop
+        GameRequest stop;
+        do
+        {
+            Thread.sleep(10);
+            stop = service.submit(id, GameTask.STOP_SEARCH, null).get();
+        } while (!stop.success && !search.isDone());
+
+        assertTrue(stop.success);
+        GameRequest response = search.get(5, TimeUnit.SECONDS);
+        assertTrue(response.success);
+        assertNotNull(response.info);
+        // the limits can be used again, only the search's copy was stopped
+        assertFalse(limits.isStopped());
+    }
+
+    /**
+     * STOP_SEARCH with no search going fails without waiting for anything
+     */
+    @Test(timeout = 20000)
+    public void testStopSearchWithNoSearch() throws Exception
+    {
+        String id = service.createSession();
+        GameRequest stop = service.submit(id, GameTask.STOP_SEARCH, null).get();
+        assertFalse(stop.success);
+    }
+}